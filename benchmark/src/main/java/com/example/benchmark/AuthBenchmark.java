@@ -0,0 +1,134 @@
+package com.example.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.common.Constants;
+import com.example.common.cache.AccountCache;
+import com.example.common.config.JwtInterceptor;
+import com.example.common.enums.RoleEnum;
+import com.example.entity.User;
+import com.example.service.UserService;
+import com.example.utils.TokenUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 认证热路径基准测试
+ * 直接调用 springboot 模块的 TokenUtils、AccountCache、JwtInterceptor，生产代码的性能变化会直接反映在结果里；
+ * 不启动 Spring 容器，依赖用反射注入，查账号的 UserService 换成不查库的固定返回值，只测认证本身的开销
+ * 运行：先在 springboot 目录 mvn install，再 mvn clean package && java -jar target/benchmarks.jar AuthBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthBenchmark {
+
+    private static final Integer USER_ID = 1;
+    private static final String PASSWORD = "123456";
+    private static final String AUDIENCE = USER_ID + "-" + RoleEnum.USER.name();
+
+    private String token;
+    private AccountCache accountCache;
+    private JwtInterceptor jwtInterceptor;
+    private MockHttpServletRequest request;
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Setup
+    public void setup() throws Exception {
+        token = TokenUtils.createToken(AUDIENCE, PASSWORD);
+
+        User user = new User();
+        user.setId(USER_ID);
+        user.setPassword(PASSWORD);
+        user.setRole(RoleEnum.USER.name());
+        UserService userService = new UserService() {
+            @Override
+            public User selectAccountById(Integer id) {
+                return user;
+            }
+        };
+
+        accountCache = new AccountCache();
+        inject(accountCache, "maxSize", 10000);
+        inject(accountCache, "ttlSeconds", 300L);
+        jwtInterceptor = new JwtInterceptor();
+        inject(jwtInterceptor, "userService", userService);
+        inject(jwtInterceptor, "accountCache", accountCache);
+        accountCache.put(RoleEnum.USER.name(), USER_ID, user, accountCache.stamp(RoleEnum.USER.name(), USER_ID));
+
+        request = new MockHttpServletRequest();
+        request.addHeader(Constants.TOKEN, token);
+    }
+
+    /**
+     * 签发token（登录时执行）
+     */
+    @Benchmark
+    public String createToken() {
+        return TokenUtils.createToken(AUDIENCE, PASSWORD);
+    }
+
+    /**
+     * 只解析token不验签（preHandle 先解析出账号ID和角色再查缓存）
+     */
+    @Benchmark
+    public DecodedJWT decode() {
+        return JWT.decode(token);
+    }
+
+    /**
+     * 每次构建 JWTVerifier 再验签，作为没有缓存 verifier 时的参照
+     */
+    @Benchmark
+    public DecodedJWT verifyWithoutCache() {
+        return JWT.require(Algorithm.HMAC256(PASSWORD)).build().verify(token);
+    }
+
+    /**
+     * 账号缓存命中
+     */
+    @Benchmark
+    public AccountCache.CachedAccount accountCacheHit() {
+        return accountCache.get(RoleEnum.USER.name(), USER_ID);
+    }
+
+    /**
+     * 缓存命中时 preHandle 的完整开销：解析token、取缓存的账号和 verifier、验签
+     */
+    @Benchmark
+    public boolean preHandleCacheHit() {
+        return jwtInterceptor.preHandle(request, response, null);
+    }
+
+    /**
+     * 缓存未命中时 preHandle 的开销（查账号不访问数据库）：多出构建 verifier 和放入缓存
+     */
+    @Benchmark
+    public boolean preHandleCacheMiss() {
+        accountCache.invalidate(RoleEnum.USER.name(), USER_ID);
+        return jwtInterceptor.preHandle(request, response, null);
+    }
+
+    private static void inject(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 压测数据库初始化
+ * 执行 数据库/xm_hospital_manager.sql（去掉 H2 不支持的 MySQL 表选项），再批量生成医生、排班和患者
+ */
+public class DatabaseSeeder {
+
+    static final String PASSWORD = "123456";
+    static final String USERNAME_PREFIX = "load_user_";
+    static final String DOCTOR_PREFIX = "load_doctor_";
+
+    private static final String[] TABLES = {"admin", "department", "doctor", "notice", "plan", "record", "registration", "reserve", "user"};
+
+    private final Connection connection;
+
+    DatabaseSeeder(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * 执行 classpath 下的 MySQL 导出脚本
+     */
+    void runDump(String resource) throws IOException, SQLException {
+        String sql;
+        try (InputStream in = DatabaseSeeder.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("找不到建表脚本: " + resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            sql = out.toString(StandardCharsets.UTF_8.name());
+        }
+        // 去掉开头的 /* */ 注释和 -- 注释行
+        sql = sql.replaceAll("(?s)/\\*.*?\\*/", "").replaceAll("(?m)^--.*$", "");
+        try (Statement statement = connection.createStatement()) {
+            // 语句都以行尾的分号结束，病历内容里的分号不在行尾
+            for (String part : sql.split(";\\s*\\n")) {
+                String h2 = toH2(part.trim());
+                if (!h2.isEmpty()) {
+                    statement.execute(h2);
+                }
+            }
+        }
+        restartIdentities();
+    }
+
+    /**
+     * 生成压测数据：医生平均分到各科室，每个医生在 week 这天排班 capacity 个号；患者余额足够挂任意次号
+     * @return 压测医生的ID范围 [最小ID, 最大ID]
+     */
+    int[] seed(int doctors, int users, int capacity, String week) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "insert into doctor (username, password, name, role, price, department_id) values (?, ?, ?, 'DOCTOR', 10.00, ?)")) {
+            for (int i = 0; i < doctors; i++) {
+                ps.setString(1, DOCTOR_PREFIX + i);
+                ps.setString(2, PASSWORD);
+                ps.setString(3, "压测医生" + i);
+                ps.setInt(4, i % 4 + 1);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "insert into plan (doctor_id, num, week) select id, ?, ? from doctor where username like '" + DOCTOR_PREFIX + "%'")) {
+            ps.setInt(1, capacity);
+            ps.setString(2, week);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement(
+                "insert into user (username, password, name, role, account) values (?, ?, ?, 'USER', 100000.00)")) {
+            for (int i = 0; i < users; i++) {
+                ps.setString(1, USERNAME_PREFIX + i);
+                ps.setString(2, PASSWORD);
+                ps.setString(3, "压测患者" + i);
+                ps.addBatch();
+                if (i % 1000 == 999) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select min(id), max(id) from doctor where username like '" + DOCTOR_PREFIX + "%'")) {
+            rs.next();
+            return new int[]{rs.getInt(1), rs.getInt(2)};
+        }
+    }
+
+    /**
+     * 导出脚本里的数据带着ID插入，H2 不会因此推进自增值，需要手动从最大ID之后开始
+     */
+    private void restartIdentities() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String table : TABLES) {
+                int next;
+                try (ResultSet rs = statement.executeQuery("select coalesce(max(id), 0) + 1 from " + table)) {
+                    rs.next();
+                    next = rs.getInt(1);
+                }
+                statement.execute("alter table " + table + " alter column id restart with " + next);
+            }
+        }
+    }
+
+    /**
+     * 把 Navicat 导出的 MySQL 语句改写成 H2（MySQL 模式）能执行的语句
+     */
+    static String toH2(String sql) {
+        if (sql.isEmpty() || sql.regionMatches(true, 0, "SET ", 0, 4)) {
+            return "";
+        }
+        return sql
+                // 表选项：ENGINE、字符集、表注释、行格式
+                .replaceAll("(?s)\\)\\s*ENGINE\\s*=.*$", ")")
+                .replaceAll("CHARACTER SET \\w+ COLLATE \\w+", "")
+                .replaceAll(" USING BTREE", "")
+                .replaceAll("int\\(\\d+\\)", "int")
+                .replaceAll("double\\((\\d+), (\\d+)\\)", "decimal($1, $2)")
+                // MySQL 的反斜杠转义
+                .replace("\\\"", "\"")
+                .replace("\\'", "''")
+                .replace('`', '"');
+    }
+}
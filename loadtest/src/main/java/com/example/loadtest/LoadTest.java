@@ -0,0 +1,264 @@
+package com.example.loadtest;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.example.SpringbootApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 端到端压测入口
+ * 启动内存 H2（MySQL 模式）并初始化数据，以随机端口启动应用，然后用 concurrency 个线程循环执行：
+ * 登录 -> 医生分页列表 -> 挂号，按 dashboardRatio 的比例穿插访问首页统计；结束后输出各接口的
+ * p50/p99 延迟和吞吐量，并直接查库检查超挂（挂号数超过排班号数）和重复挂号，发现问题时以非0退出
+ * <p>
+ * 注意：H2 的锁实现和 MySQL InnoDB 不同，没有间隙锁和 next-key 锁，死锁检测和加锁顺序也不一样，
+ * 所以这里跑通只说明在 H2 上没有超挂和重复挂号，不能证明在 MySQL 上没有锁等待和死锁；上线前要连真实的 MySQL 再压一次
+ * <p>
+ * 参数（-D 系统属性）：
+ * loadtest.users=2000 患者数，loadtest.doctors=50 医生数，loadtest.capacity=30 每个医生的号数，
+ * loadtest.concurrency=64 并发线程数，loadtest.duration=60 压测秒数，loadtest.dashboardRatio=0.05
+ */
+public class LoadTest {
+
+    // H2 使用 Spring Boot 管理的 1.4.200 版本，user 还不是保留字，mapper 里不加引号的 user 表可以直接用
+    private static final String JDBC_URL = "jdbc:h2:mem:hospital;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+            + "CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1";
+
+    private final int users = Integer.getInteger("loadtest.users", 2000);
+    private final int doctors = Integer.getInteger("loadtest.doctors", 50);
+    private final int capacity = Integer.getInteger("loadtest.capacity", 30);
+    private final int concurrency = Integer.getInteger("loadtest.concurrency", 64);
+    private final int duration = Integer.getInteger("loadtest.duration", 60);
+    private final double dashboardRatio = Double.parseDouble(System.getProperty("loadtest.dashboardRatio", "0.05"));
+
+    private String baseUrl;
+    private int[] doctorIds;
+
+    // 接口 -> Result.code -> 次数
+    private final Map<String, Map<String, LongAdder>> codes = new ConcurrentHashMap<>();
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        int exitCode = new LoadTest().run();
+        System.exit(exitCode);
+    }
+
+    private int run() throws Exception {
+        String today = LocalDate.now().toString();
+        String week = LocalDate.now().getDayOfWeek().getDisplayName(TextStyle.FULL_STANDALONE, Locale.CHINA);
+        // 连接一直保持到压测结束，内存库不会被关闭
+        try (Connection connection = DriverManager.getConnection(JDBC_URL, "sa", "")) {
+            DatabaseSeeder seeder = new DatabaseSeeder(connection);
+            seeder.runDump("xm_hospital_manager.sql");
+            doctorIds = seeder.seed(doctors, users, capacity, week);
+            System.out.printf("数据准备完成：%d 个医生（每人 %d 个号），%d 个患者%n", doctors, capacity, users);
+
+            ConfigurableApplicationContext context = SpringApplication.run(SpringbootApplication.class,
+                    "--spring.datasource.url=" + JDBC_URL,
+                    "--spring.datasource.driver-class-name=org.h2.Driver",
+                    "--spring.datasource.username=sa",
+                    "--spring.datasource.password=",
+                    "--spring.datasource.hikari.maximum-pool-size=" + Math.max(10, concurrency / 2),
+                    "--server.port=0",
+                    "--management.server.port=-1",
+                    "--file-storage.migrate-legacy=false",
+                    "--sql-log.sample-rate=0",
+                    "--logging.level.root=WARN");
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            baseUrl = "http://localhost:" + port;
+
+            List<Map<String, List<Long>>> latencies;
+            long start = System.nanoTime();
+            try {
+                latencies = drive();
+            } finally {
+                context.close();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            report(merge(latencies), seconds);
+            return verify(connection, today, week);
+        }
+    }
+
+    /**
+     * 并发执行压测流程，每个线程自己记录延迟，结束后再合并
+     */
+    private List<Map<String, List<Long>>> drive() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        List<Future<Map<String, List<Long>>>> futures = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(pool.submit(() -> {
+                Map<String, List<Long>> local = new TreeMap<>();
+                while (System.nanoTime() < deadline) {
+                    try {
+                        iteration(local);
+                    } catch (IOException e) {
+                        errors.increment();
+                    }
+                }
+                return local;
+            }));
+        }
+        List<Map<String, List<Long>>> result = new ArrayList<>();
+        for (Future<Map<String, List<Long>>> future : futures) {
+            result.add(future.get());
+        }
+        pool.shutdown();
+        return result;
+    }
+
+    private void iteration(Map<String, List<Long>> local) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        JSONObject login = new JSONObject()
+                .set("username", DatabaseSeeder.USERNAME_PREFIX + random.nextInt(users))
+                .set("password", DatabaseSeeder.PASSWORD)
+                .set("role", "USER");
+        JSONObject result = call(local, "POST /login", "POST", "/login", null, login.toString());
+        if (!"200".equals(result.getStr("code"))) {
+            return;
+        }
+        JSONObject account = result.getJSONObject("data");
+        String token = account.getStr("token");
+
+        call(local, "GET /doctor/selectPage2", "GET", "/doctor/selectPage2?pageNum=1&pageSize=10&departmentId=" + (random.nextInt(4) + 1), token, null);
+
+        int doctorId = doctorIds[0] + random.nextInt(doctorIds[1] - doctorIds[0] + 1);
+        JSONObject reserve = new JSONObject().set("doctorId", doctorId).set("userId", account.getInt("id"));
+        JSONObject added = call(local, "POST /reserve/add", "POST", "/reserve/add", token, reserve.toString());
+        if ("200".equals(added.getStr("code"))) {
+            reserved.increment();
+        }
+
+        if (random.nextDouble() < dashboardRatio) {
+            call(local, "GET /home/statistics", "GET", "/home/statistics", token, null);
+        }
+    }
+
+    private JSONObject call(Map<String, List<Long>> local, String name, String method, String path, String token, String body) throws IOException {
+        long start = System.nanoTime();
+        HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        conn.setRequestMethod(method);
+        conn.setConnectTimeout(5000);
+        conn.setReadTimeout(30000);
+        if (token != null) {
+            conn.setRequestProperty("token", token);
+        }
+        if (body != null) {
+            conn.setDoOutput(true);
+            conn.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        String response;
+        try (InputStream in = conn.getResponseCode() < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+            response = read(in);
+        }
+        local.computeIfAbsent(name, k -> new ArrayList<>()).add(System.nanoTime() - start);
+        JSONObject json = JSONUtil.isTypeJSONObject(response) ? JSONUtil.parseObj(response) : new JSONObject().set("code", "HTTP " + conn.getResponseCode());
+        codes.computeIfAbsent(name, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(json.getStr("code"), k -> new LongAdder()).increment();
+        return json;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private static Map<String, List<Long>> merge(List<Map<String, List<Long>>> latencies) {
+        Map<String, List<Long>> merged = new TreeMap<>();
+        latencies.forEach(local -> local.forEach((name, list) -> merged.computeIfAbsent(name, k -> new ArrayList<>()).addAll(list)));
+        return merged;
+    }
+
+    private void report(Map<String, List<Long>> latencies, double seconds) {
+        System.out.printf("%n压测 %.1f 秒，并发 %d%n", seconds, concurrency);
+        System.out.printf("%-26s %10s %10s %10s %10s %10s  %s%n", "接口", "请求数", "吞吐/秒", "p50(ms)", "p99(ms)", "max(ms)", "Result.code");
+        latencies.forEach((name, list) -> {
+            Collections.sort(list);
+            System.out.printf("%-26s %10d %10.1f %10.2f %10.2f %10.2f  %s%n", name, list.size(), list.size() / seconds,
+                    percentile(list, 0.50), percentile(list, 0.99), list.get(list.size() - 1) / 1e6, codes.get(name));
+        });
+        System.out.printf("挂号成功 %d 次，网络错误 %d 次%n", reserved.sum(), errors.sum());
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+
+    /**
+     * 直接查库检查：超挂、同一患者重复挂同一医生、余额为负、接口返回成功次数和实际挂号数不一致
+     */
+    private int verify(Connection connection, String today, String week) throws SQLException {
+        long oversold = queryLong(connection,
+                "select coalesce(sum(t.booked - t.num), 0) from (select count(*) as booked, p.num as num from reserve r"
+                        + " join plan p on p.doctor_id = r.doctor_id and p.week = ? where r.time = ?"
+                        + " group by r.doctor_id, p.num having count(*) > p.num) t", week, today);
+        long doubleBooked = queryLong(connection,
+                "select count(*) from (select user_id, doctor_id from reserve where time = ?"
+                        + " group by user_id, doctor_id having count(*) > 1) t", today);
+        long negative = queryLong(connection, "select count(*) from user where account < 0");
+        long rows = queryLong(connection, "select count(*) from reserve where time = ? and doctor_id between ? and ?",
+                today, doctorIds[0], doctorIds[1]);
+
+        System.out.printf("%n超挂 %d 个号，重复挂号 %d 组，余额为负 %d 人，数据库挂号 %d 条（接口成功 %d 次）%n",
+                oversold, doubleBooked, negative, rows, reserved.sum());
+        boolean ok = oversold == 0 && doubleBooked == 0 && negative == 0 && rows == reserved.sum();
+        System.out.println(ok ? "检查通过" : "检查失败");
+        return ok ? 0 : 1;
+    }
+
+    private static long queryLong(Connection connection, String sql, Object... params) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}
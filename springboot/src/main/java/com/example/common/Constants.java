@@ -6,4 +6,17 @@ public interface Constants {
 
     String USER_DEFAULT_PASSWORD = "123456";
 
+    // JwtInterceptor 认证通过后，当前登录用户在 request 里的属性名
+    String CURRENT_USER = "currentUser";
+
+    // 客户端提交挂号时带的幂等key请求头，同一次提交的重试使用同一个值
+    String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    // 挂号高峰排队时的响应头：排队号和预计等待毫秒数
+    String QUEUE_TICKET = "X-Queue-Ticket";
+    String QUEUE_WAIT_MS = "X-Queue-Wait-Ms";
+
+    // 批量删除时每条 in 语句最多带的ID数量
+    int DELETE_BATCH_SIZE = 500;
+
 }
@@ -0,0 +1,209 @@
+package com.example.common.cache;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.example.entity.Account;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已认证账号缓存
+ * 按 角色+ID 缓存账号和用其密码构建好的 JWTVerifier，JwtInterceptor 命中缓存时不再查库
+ * 修改密码、修改资料、删除账号时需要调用 invalidate；返回给调用方的账号都是副本
+ * 每次 invalidate 都会把账号的版本号加一，查库前先用 stamp 取版本号，放入时版本号已经变了说明查到的可能是旧账号，不放入缓存
+ */
+@Component
+public class AccountCache {
+
+    private static final int VERSION_STRIPES = 1024;
+
+    @Value("${account-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${account-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, CachedAccount> cache = new ConcurrentHashMap<>();
+    // 同一时间只有一个线程做淘汰，其他线程照常写入
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    // 账号版本号，按 key 的哈希分段存放，不随账号数量增长；不同账号落在同一段时只会多一次查库
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * 命中、未命中、容量淘汰、过期淘汰次数注册到监控指标，在管理端口的 /actuator/prometheus 查看
+     */
+    @PostConstruct
+    public void init() {
+        Tags tags = Tags.of("cache", "account");
+        meterRegistry.gaugeMapSize("cache.size", tags, cache);
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum).tags(tags).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum).tags(tags).tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum).tags(tags).tag("cause", "size").register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", expirations, LongAdder::sum).tags(tags).tag("cause", "expired").register(meterRegistry);
+    }
+
+    /**
+     * 查询缓存，未命中或已过期返回null
+     */
+    public CachedAccount get(String role, Integer id) {
+        String key = key(role, id);
+        CachedAccount cached = cache.get(key);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        if (cached.expireAt < System.currentTimeMillis()) {
+            if (cache.remove(key, cached)) {
+                expirations.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached;
+    }
+
+    /**
+     * 查库前调用，取账号当前的版本号，放入缓存时传给 put
+     */
+    public long stamp(String role, Integer id) {
+        return versions.get(stripe(key(role, id)));
+    }
+
+    /**
+     * 放入缓存，返回带 JWTVerifier 的缓存对象
+     * 查库以后账号被 invalidate 过时只返回不放入，避免把旧密码的 verifier 放回缓存
+     * @param stamp 查库前 stamp 返回的版本号
+     */
+    public CachedAccount put(String role, Integer id, Account account, long stamp) {
+        JWTVerifier verifier = JWT.require(Algorithm.HMAC256(account.getPassword())).build();
+        CachedAccount cached = new CachedAccount(account, verifier, System.currentTimeMillis() + ttlSeconds * 1000);
+        String key = key(role, id);
+        int stripe = stripe(key);
+        if (versions.get(stripe) != stamp) {
+            return cached;
+        }
+        if (cache.size() >= maxSize && evicting.compareAndSet(false, true)) {
+            try {
+                evict();
+            } finally {
+                evicting.set(false);
+            }
+        }
+        cache.put(key, cached);
+        // 放入的同时有 invalidate 时，它可能在放入之前就移除过了，这里再检查一次
+        if (versions.get(stripe) != stamp) {
+            cache.remove(key, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * 账号信息变更后移除缓存，在事务中时提交后再移除一次，避免提交前进来的请求把旧账号放回缓存
+     */
+    public void invalidate(String role, Integer id) {
+        String key = key(role, id);
+        remove(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(key);
+                }
+            });
+        }
+    }
+
+    /**
+     * 先加版本号再移除，之前开始查库的请求都放不进来
+     */
+    private void remove(String key) {
+        versions.incrementAndGet(stripe(key));
+        cache.remove(key);
+    }
+
+    /**
+     * 缓存满了以后先清理过期的，还不够就按过期时间从早到晚淘汰到容量的90%，
+     * 一次淘汰腾出一批空间，之后的写入不用每次都遍历整个缓存
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        cache.forEach((key, cached) -> {
+            if (cached.expireAt < now && cache.remove(key, cached)) {
+                expirations.increment();
+            }
+        });
+        int lowWater = maxSize - maxSize / 10;
+        int excess = cache.size() - lowWater;
+        if (excess <= 0) {
+            return;
+        }
+        List<Map.Entry<String, CachedAccount>> entries = new ArrayList<>(cache.entrySet());
+        entries.sort(Comparator.comparingLong(e -> e.getValue().expireAt));
+        for (int i = 0; i < excess && i < entries.size(); i++) {
+            Map.Entry<String, CachedAccount> entry = entries.get(i);
+            if (cache.remove(entry.getKey(), entry.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static String key(String role, Integer id) {
+        return id + "-" + role;
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & 0x7fffffff) % VERSION_STRIPES;
+    }
+
+    public static class CachedAccount {
+        private final Account account;
+        private final JWTVerifier verifier;
+        private final long expireAt;
+
+        CachedAccount(Account account, JWTVerifier verifier, long expireAt) {
+            this.account = account;
+            this.verifier = verifier;
+            this.expireAt = expireAt;
+        }
+
+        /**
+         * 返回账号的副本，缓存里的对象被所有请求共用，调用方修改副本不会影响其他请求
+         */
+        public Account getAccount() {
+            Account copy = BeanUtils.instantiateClass(account.getClass());
+            BeanUtils.copyProperties(account, copy);
+            return copy;
+        }
+
+        public JWTVerifier getVerifier() {
+            return verifier;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.common.cache;
+
+import cn.hutool.json.JSONUtil;
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.github.pagehelper.PageInfo;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 分页总数缓存
+ * 按 查询语句+查询条件 缓存 PageHelper 的 count 结果，命中时翻页只执行一次 limit 查询；
+ * 表有新增、修改、删除时由 CountCacheInterceptor 调用 invalidate 清掉相关的缓存
+ * 总数超过 approximate-threshold 的大表，写入时不清缓存，到 approximate-ttl-seconds 后才重新统计，返回的总数是近似值
+ */
+@Component
+public class CountCache {
+
+    @Value("${count-cache.max-size:1000}")
+    private int maxSize;
+
+    // 0 表示不启用近似总数
+    @Value("${count-cache.approximate-threshold:0}")
+    private long approximateThreshold;
+
+    @Value("${count-cache.approximate-ttl-seconds:60}")
+    private long approximateTtlSeconds;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, CachedCount> cache = new ConcurrentHashMap<>();
+    // 表名 -> 写入版本号，统计期间表被写过的结果不放进缓存
+    private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * 命中、未命中、失效次数注册到监控指标，在管理端口的 /actuator/prometheus 查看
+     */
+    @PostConstruct
+    public void init() {
+        Tags tags = Tags.of("cache", "count");
+        meterRegistry.gaugeMapSize("cache.size", tags, cache);
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum).tags(tags).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum).tags(tags).tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", invalidations, LongAdder::sum).tags(tags).tag("cause", "invalidated").register(meterRegistry);
+    }
+
+    /**
+     * 分页查询，总数优先从缓存取
+     * @param filter 查询条件，非空字段参与缓存key
+     * @param query  实际的 selectAll 查询
+     * @param tables 查询结果数量依赖的表，其中任意一张表被写入都会让缓存失效
+     */
+    public <T> PageInfo<T> selectPage(Object filter, Integer pageNum, Integer pageSize, Supplier<List<T>> query, String... tables) {
+        String key = Arrays.toString(tables) + filter.getClass().getSimpleName() + JSONUtil.toJsonStr(filter);
+        CachedCount cached = get(key);
+        if (cached != null && pageSize != null && pageSize > 0) {
+            hits.increment();
+            // 和 reasonable 配置一致：页码超出范围时查最后一页
+            int pages = (int) ((cached.total + pageSize - 1) / pageSize);
+            Page<T> page = PageHelper.startPage(Math.max(Math.min(pageNum, pages), 1), pageSize, false);
+            query.get();
+            page.setTotal(cached.total);
+            return new PageInfo<>(page);
+        }
+        misses.increment();
+        long[] before = versions(tables);
+        Page<T> page = PageHelper.startPage(pageNum, pageSize);
+        query.get();
+        if (Arrays.equals(before, versions(tables))) {
+            put(key, new CachedCount(page.getTotal(), tables, System.currentTimeMillis()));
+        }
+        return new PageInfo<>(page);
+    }
+
+    /**
+     * 表数据变更后清除依赖该表的缓存，在事务中时提交后再清一次，避免其他请求在提交前把旧的总数放回缓存
+     */
+    public void invalidate(String table) {
+        evict(table);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(table);
+                }
+            });
+        }
+    }
+
+    private CachedCount get(String key) {
+        CachedCount cached = cache.get(key);
+        if (cached != null && isApproximate(cached)
+                && System.currentTimeMillis() - cached.createdAt > approximateTtlSeconds * 1000) {
+            cache.remove(key, cached);
+            return null;
+        }
+        return cached;
+    }
+
+    private void put(String key, CachedCount cached) {
+        if (cache.size() >= maxSize) {
+            // 缓存的只是总数，满了直接清空重新统计
+            cache.clear();
+        }
+        cache.put(key, cached);
+    }
+
+    private void evict(String table) {
+        versions.computeIfAbsent(table, k -> new AtomicLong()).incrementAndGet();
+        cache.forEach((key, cached) -> {
+            if (!isApproximate(cached) && Arrays.asList(cached.tables).contains(table) && cache.remove(key, cached)) {
+                invalidations.increment();
+            }
+        });
+    }
+
+    private boolean isApproximate(CachedCount cached) {
+        return approximateThreshold > 0 && cached.total >= approximateThreshold;
+    }
+
+    private long[] versions(String[] tables) {
+        long[] result = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            AtomicLong version = versions.get(tables[i]);
+            result[i] = version == null ? 0 : version.get();
+        }
+        return result;
+    }
+
+    private static class CachedCount {
+        private final long total;
+        private final String[] tables;
+        private final long createdAt;
+
+        CachedCount(long total, String[] tables, long createdAt) {
+            this.total = total;
+            this.tables = tables;
+            this.createdAt = createdAt;
+        }
+    }
+}
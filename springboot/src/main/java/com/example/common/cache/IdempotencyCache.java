@@ -0,0 +1,201 @@
+package com.example.common.cache;
+
+import com.example.exception.CustomException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 幂等请求表
+ * 客户端对同一次提交（包括双击和重试）带上相同的幂等key，这里按 key 记录执行结果：
+ * 执行中的重复请求等第一次执行完成后拿同一个结果，执行成功的结果保留 ttl-seconds，期间的重复请求直接返回，不再执行；
+ * 执行失败时事务已经回滚，移除记录让重试重新执行。内存里的记录过期、被淘汰或请求落到其他实例时，由调用方传入的 lookup 到数据库查原来的结果。
+ * 同一个 key 带了不同的请求内容（指纹不同）时直接拒绝，不会把第一次的结果当成这次的结果返回
+ */
+@Component
+public class IdempotencyCache {
+
+    @Value("${idempotency.max-size:100000}")
+    private int maxSize;
+
+    @Value("${idempotency.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    // 重复请求等待第一次执行完成的最长时间
+    @Value("${idempotency.wait-timeout-ms:10000}")
+    private long waitTimeoutMs;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, Entry> table = new ConcurrentHashMap<>();
+    // 同一时间只有一个线程做淘汰，其他线程照常执行
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * 实际执行、内存命中、数据库命中、容量淘汰、过期淘汰次数注册到监控指标，在管理端口的 /actuator/prometheus 查看
+     */
+    @PostConstruct
+    public void init() {
+        meterRegistry.gaugeMapSize("idempotency.size", Tags.empty(), table);
+        FunctionCounter.builder("idempotency.requests", executions, LongAdder::sum).tag("result", "executed").register(meterRegistry);
+        FunctionCounter.builder("idempotency.requests", replays, LongAdder::sum).tag("result", "replayed").register(meterRegistry);
+        FunctionCounter.builder("idempotency.requests", lookups, LongAdder::sum).tag("result", "lookup").register(meterRegistry);
+        FunctionCounter.builder("idempotency.evictions", evictions, LongAdder::sum).tag("cause", "size").register(meterRegistry);
+        FunctionCounter.builder("idempotency.evictions", expirations, LongAdder::sum).tag("cause", "expired").register(meterRegistry);
+    }
+
+    /**
+     * 按幂等key执行一次
+     * @param key         幂等key，调用方负责加上业务和用户前缀
+     * @param fingerprint 请求内容的指纹，同一个 key 的指纹必须一致
+     * @param lookup      到数据库查这个 key 原来的执行结果，没有时返回null；结果和这次请求不符时由 lookup 抛出异常
+     * @param action      实际执行的操作，返回值作为结果记录下来
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, String fingerprint, Supplier<T> lookup, Supplier<T> action) {
+        while (true) {
+            Entry entry = table.get(key);
+            if (entry != null && entry.expireAt < System.currentTimeMillis()) {
+                if (table.remove(key, entry)) {
+                    expirations.increment();
+                }
+                continue;
+            }
+            if (entry != null) {
+                if (!entry.fingerprint.equals(fingerprint)) {
+                    throw new CustomException("-1", "该幂等key已用于其他请求，请重新提交");
+                }
+                replays.increment();
+                return (T) entry.await(waitTimeoutMs);
+            }
+            Entry created = new Entry(fingerprint);
+            if (table.putIfAbsent(key, created) == null) {
+                return run(key, created, lookup, action);
+            }
+        }
+    }
+
+    private <T> T run(String key, Entry entry, Supplier<T> lookup, Supplier<T> action) {
+        if (table.size() > maxSize && evicting.compareAndSet(false, true)) {
+            try {
+                evict();
+            } finally {
+                evicting.set(false);
+            }
+        }
+        try {
+            T result = lookup.get();
+            if (result != null) {
+                lookups.increment();
+            } else {
+                executions.increment();
+                result = action.get();
+            }
+            entry.complete(result, ttlSeconds);
+            return result;
+        } catch (RuntimeException | Error e) {
+            // 其他实例用同一个 key 先提交成功时，这里会被唯一索引拦下，回滚后再查一次就能拿到原来的结果
+            T existing = null;
+            try {
+                existing = lookup.get();
+            } catch (RuntimeException ignored) {
+            }
+            if (existing != null) {
+                lookups.increment();
+                entry.complete(existing, ttlSeconds);
+                return existing;
+            }
+            table.remove(key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 表满了以后先清理过期的，还不够就按过期时间从早到晚淘汰到容量的90%，执行中的记录不会被淘汰；
+     * 一次淘汰腾出一批空间，之后的请求不用每次都遍历整张表
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        table.forEach((key, entry) -> {
+            if (entry.expireAt < now && table.remove(key, entry)) {
+                expirations.increment();
+            }
+        });
+        int lowWater = maxSize - maxSize / 10;
+        int excess = table.size() - lowWater;
+        if (excess <= 0) {
+            return;
+        }
+        List<Map.Entry<String, Entry>> completed = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : table.entrySet()) {
+            if (e.getValue().result.isDone()) {
+                completed.add(e);
+            }
+        }
+        completed.sort(Comparator.comparingLong(e -> e.getValue().expireAt));
+        for (int i = 0; i < excess && i < completed.size(); i++) {
+            Map.Entry<String, Entry> e = completed.get(i);
+            if (table.remove(e.getKey(), e.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        // 执行完成前不过期
+        private volatile long expireAt = Long.MAX_VALUE;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        void complete(Object value, long ttlSeconds) {
+            expireAt = System.currentTimeMillis() + ttlSeconds * 1000;
+            result.complete(value);
+        }
+
+        Object await(long timeoutMs) {
+            try {
+                return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                // 第一次执行失败时，重复请求拿到同样的错误
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw (Error) e.getCause();
+            } catch (TimeoutException e) {
+                throw new CustomException("-1", "请求正在处理中，请稍后查看结果");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CustomException("-1", "请求正在处理中，请稍后查看结果");
+            }
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.common.cache;
+
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONUtil;
+import com.example.entity.Department;
+import com.example.entity.Doctor;
+import com.example.entity.Plan;
+import com.example.mapper.DepartmentMapper;
+import com.example.mapper.DoctorMapper;
+import com.example.mapper.PlanMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 科室、医生、排班基础数据缓存
+ * 三张表数据量小、改动少，但几乎每个查询都要关联，这里整表缓存为不可变快照，查询和关联都在内存里完成
+ * 写入时由 DepartmentService、DoctorService、PlanService 调用 refreshXxx，事务提交后重新加载对应的表并整体替换快照；
+ * 其他实例的写入靠定时全量刷新同步
+ */
+@Component
+public class ReferenceDataCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ReferenceDataCache.class);
+
+    @Resource
+    private DepartmentMapper departmentMapper;
+    @Resource
+    private DoctorMapper doctorMapper;
+    @Resource
+    private PlanMapper planMapper;
+
+    private volatile Snapshot snapshot;
+    // 每次替换快照加1，依赖基础数据的其他缓存据此判断是否需要重建
+    private volatile long version;
+
+    @PostConstruct
+    public void init() {
+        try {
+            refreshAll();
+        } catch (Exception e) {
+            log.error("基础数据缓存初始化失败，首次访问时重新加载", e);
+        }
+    }
+
+    /**
+     * 定时全量刷新，同步其他实例的写入；数据没有变化时保留原快照，版本号不变
+     */
+    @Scheduled(initialDelayString = "${reference-data.refresh-interval-ms:60000}", fixedDelayString = "${reference-data.refresh-interval-ms:60000}")
+    public synchronized void refreshAll() {
+        Snapshot s = new Snapshot(loadDepartments(), loadDoctors(), loadPlans());
+        if (snapshot != null && snapshot.fingerprint.equals(s.fingerprint)) {
+            return;
+        }
+        snapshot = s;
+        version++;
+    }
+
+    /**
+     * 科室变更后重新加载科室表，其余两张表沿用当前快照
+     */
+    public void refreshDepartments() {
+        afterCommit(() -> {
+            synchronized (this) {
+                Snapshot s = current();
+                snapshot = new Snapshot(loadDepartments(), s.doctors, s.plans);
+                version++;
+            }
+        });
+    }
+
+    /**
+     * 医生变更后重新加载医生表，其余两张表沿用当前快照
+     */
+    public void refreshDoctors() {
+        afterCommit(() -> {
+            synchronized (this) {
+                Snapshot s = current();
+                snapshot = new Snapshot(s.departments, loadDoctors(), s.plans);
+                version++;
+            }
+        });
+    }
+
+    /**
+     * 排班变更后重新加载排班表，其余两张表沿用当前快照
+     */
+    public void refreshPlans() {
+        afterCommit(() -> {
+            synchronized (this) {
+                Snapshot s = current();
+                snapshot = new Snapshot(s.departments, s.doctors, loadPlans());
+                version++;
+            }
+        });
+    }
+
+    /**
+     * 当前快照的版本号
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * 根据ID查询科室
+     */
+    public Department getDepartment(Integer id) {
+        return copy(current().departmentMap.get(id), Department::new);
+    }
+
+    /**
+     * 按 DepartmentMapper.selectAll 的条件查询科室，ID倒序
+     */
+    public List<Department> selectDepartments(Department filter) {
+        List<Department> list = new ArrayList<>();
+        for (Department department : current().departments) {
+            if (eq(filter.getId(), department.getId())
+                    && like(filter.getName(), department.getName())
+                    && eq(filter.getDescription(), department.getDescription())) {
+                list.add(copy(department, Department::new));
+            }
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+    /**
+     * 根据ID查询医生，带科室名称
+     */
+    public Doctor getDoctor(Integer id) {
+        Snapshot s = current();
+        Doctor doctor = s.doctorMap.get(id);
+        return doctor == null ? null : withDepartmentName(s, doctor);
+    }
+
+    /**
+     * 按 DoctorMapper.selectAll 的条件查询医生，ID正序，带科室名称；week 不为空时只返回这天有排班的医生
+     */
+    public List<Doctor> selectDoctors(Doctor filter) {
+        Snapshot s = current();
+        List<Doctor> list = new ArrayList<>();
+        for (Doctor doctor : s.doctors) {
+            if (matches(filter, doctor) && (filter.getWeek() == null || s.plan(doctor.getId(), filter.getWeek()) != null)) {
+                list.add(withDepartmentName(s, doctor));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 医生是否符合 DoctorMapper.selectAll 的查询条件（不含 week）
+     */
+    public static boolean matches(Doctor filter, Doctor doctor) {
+        return eq(filter.getId(), doctor.getId())
+                && like(filter.getUsername(), doctor.getUsername())
+                && eq(filter.getPassword(), doctor.getPassword())
+                && eq(filter.getName(), doctor.getName())
+                && eq(filter.getPhone(), doctor.getPhone())
+                && eq(filter.getEmail(), doctor.getEmail())
+                && eq(filter.getAvatar(), doctor.getAvatar())
+                && eq(filter.getRole(), doctor.getRole())
+                && eq(filter.getDepartmentId(), doctor.getDepartmentId());
+    }
+
+    /**
+     * 根据ID查询排班
+     */
+    public Plan getPlan(Integer id) {
+        return copy(current().planMap.get(id), Plan::new);
+    }
+
+    /**
+     * 按 PlanMapper.selectAll 的条件查询排班，ID倒序，带医生姓名和科室名称
+     */
+    public List<Plan> selectPlans(Plan filter) {
+        Snapshot s = current();
+        List<Plan> list = new ArrayList<>();
+        for (Plan plan : s.plans) {
+            if (eq(filter.getId(), plan.getId())
+                    && eq(filter.getWeek(), plan.getWeek())
+                    && eq(filter.getDoctorId(), plan.getDoctorId())) {
+                Plan copy = copy(plan, Plan::new);
+                Doctor doctor = s.doctorMap.get(plan.getDoctorId());
+                if (doctor != null) {
+                    copy.setDoctorName(doctor.getName());
+                    Department department = s.departmentMap.get(doctor.getDepartmentId());
+                    copy.setDepartmentName(department == null ? null : department.getName());
+                }
+                list.add(copy);
+            }
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refreshAll();
+                }
+                s = snapshot;
+            }
+        }
+        return s;
+    }
+
+    private List<Department> loadDepartments() {
+        List<Department> list = departmentMapper.selectAll(new Department());
+        list.sort(Comparator.comparing(Department::getId));
+        return Collections.unmodifiableList(list);
+    }
+
+    private List<Doctor> loadDoctors() {
+        List<Doctor> list = doctorMapper.selectAll(new Doctor());
+        list.sort(Comparator.comparing(Doctor::getId));
+        return Collections.unmodifiableList(list);
+    }
+
+    private List<Plan> loadPlans() {
+        List<Plan> list = planMapper.selectAll(new Plan());
+        list.sort(Comparator.comparing(Plan::getId));
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 在事务中时等事务提交后再重新加载，避免读到未提交的数据
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Doctor withDepartmentName(Snapshot s, Doctor doctor) {
+        Doctor copy = copy(doctor, Doctor::new);
+        Department department = s.departmentMap.get(doctor.getDepartmentId());
+        copy.setDepartmentName(department == null ? null : department.getName());
+        return copy;
+    }
+
+    /**
+     * 快照里的对象不能被调用方修改，返回前都复制一份
+     */
+    private static <T> T copy(T source, Supplier<T> factory) {
+        if (source == null) {
+            return null;
+        }
+        T target = factory.get();
+        BeanUtils.copyProperties(source, target);
+        return target;
+    }
+
+    // 和 MySQL 默认排序规则一样不区分大小写
+    private static boolean eq(String filter, String value) {
+        return filter == null || filter.equalsIgnoreCase(value);
+    }
+
+    private static boolean like(String filter, String value) {
+        return filter == null || value != null && value.toLowerCase().contains(filter.toLowerCase());
+    }
+
+    private static boolean eq(Integer filter, Integer value) {
+        return filter == null || filter.equals(value);
+    }
+
+    private static <T> Map<Integer, T> index(List<T> list, Function<T, Integer> id) {
+        Map<Integer, T> map = new HashMap<>(list.size() * 2);
+        for (T t : list) {
+            map.put(id.apply(t), t);
+        }
+        return map;
+    }
+
+    private static class Snapshot {
+        private final List<Department> departments;
+        private final List<Doctor> doctors;
+        private final List<Plan> plans;
+        private final Map<Integer, Department> departmentMap;
+        private final Map<Integer, Doctor> doctorMap;
+        private final Map<Integer, Plan> planMap;
+        // 医生ID_星期几 -> 排班
+        private final Map<String, Plan> planByDoctorWeek = new HashMap<>();
+        // 三张表的内容摘要，定时刷新时用来判断数据有没有变化
+        private final String fingerprint;
+
+        Snapshot(List<Department> departments, List<Doctor> doctors, List<Plan> plans) {
+            this.departments = departments;
+            this.doctors = doctors;
+            this.plans = plans;
+            this.departmentMap = index(departments, Department::getId);
+            this.doctorMap = index(doctors, Doctor::getId);
+            this.planMap = index(plans, Plan::getId);
+            for (Plan plan : plans) {
+                planByDoctorWeek.put(plan.getDoctorId() + "_" + plan.getWeek(), plan);
+            }
+            this.fingerprint = SecureUtil.md5(JSONUtil.toJsonStr(departments) + JSONUtil.toJsonStr(doctors) + JSONUtil.toJsonStr(plans));
+        }
+
+        Plan plan(Integer doctorId, String week) {
+            return planByDoctorWeek.get(doctorId + "_" + week);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.common.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 相同查询合并执行
+ * 同一个 key 的查询正在执行时，后到的请求不再重复执行，等它执行完共用同一个结果；
+ * ttl-ms 大于0时结果再保留这么久，期间的相同查询直接返回。共用的结果只能读，不能修改
+ */
+@Component
+public class SingleFlight {
+
+    // 0 表示只合并同时在执行的查询，不保留结果
+    @Value("${single-flight.ttl-ms:0}")
+    private long ttlMs;
+
+    @Value("${single-flight.max-size:1000}")
+    private int maxSize;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, Call> calls = new ConcurrentHashMap<>();
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * 实际执行次数、共用结果次数注册到监控指标，在管理端口的 /actuator/prometheus 查看
+     */
+    @PostConstruct
+    public void init() {
+        meterRegistry.gaugeMapSize("single.flight.size", Tags.empty(), calls);
+        FunctionCounter.builder("single.flight.calls", executions, LongAdder::sum).tag("result", "executed").register(meterRegistry);
+        FunctionCounter.builder("single.flight.calls", shared, LongAdder::sum).tag("result", "shared").register(meterRegistry);
+    }
+
+    /**
+     * 执行查询，相同 key 同时只执行一次
+     * @param key    查询方法+查询条件
+     * @param loader 实际的查询
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader) {
+        while (true) {
+            Call call = calls.get(key);
+            if (call != null && call.expireAt < System.currentTimeMillis()) {
+                calls.remove(key, call);
+                continue;
+            }
+            if (call != null) {
+                shared.increment();
+                return (T) call.await();
+            }
+            Call created = new Call();
+            if (calls.putIfAbsent(key, created) == null) {
+                return run(key, created, loader);
+            }
+        }
+    }
+
+    private <T> T run(String key, Call call, Supplier<T> loader) {
+        if (calls.size() > maxSize) {
+            long now = System.currentTimeMillis();
+            calls.forEach((k, c) -> {
+                if (c.expireAt < now) {
+                    calls.remove(k, c);
+                }
+            });
+        }
+        executions.increment();
+        T result;
+        try {
+            result = loader.get();
+        } catch (RuntimeException | Error e) {
+            calls.remove(key, call);
+            call.result.completeExceptionally(e);
+            throw e;
+        }
+        if (ttlMs > 0) {
+            call.expireAt = System.currentTimeMillis() + ttlMs;
+        } else {
+            calls.remove(key, call);
+        }
+        call.result.complete(result);
+        return result;
+    }
+
+    private static class Call {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        // 执行完成前不过期
+        private volatile long expireAt = Long.MAX_VALUE;
+
+        Object await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                // 执行失败时等待的请求拿到同样的错误
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw (Error) e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.common.config;
+
+import com.example.common.Constants;
+import com.example.common.enums.ResultCodeEnum;
+import com.example.common.enums.RoleEnum;
+import com.example.entity.Account;
+import com.example.exception.CustomException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 挂号高峰准入控制
+ * 放号时患者集中访问挂号相关接口，不加限制会占满 Tomcat 线程和数据库连接池，登录、管理员和医生的操作也跟着超时。
+ * 这里只对患者的请求限流：同时处理的不超过 max-concurrent 个，其余按到达顺序排队（公平信号量），
+ * 排队的请求发一个排队号，响应头带上排队号和预计等待时间；排队人数超过 queue-depth 或等待超过 max-wait-ms 时直接拒绝。
+ * 管理员、医生的请求不经过排队
+ */
+@Component
+public class AdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String ADMITTED_AT = AdmissionInterceptor.class.getName() + ".ADMITTED_AT";
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    // 同时处理的患者请求数，要小于数据库连接池大小，给管理员、医生和登录留出连接
+    @Value("${admission.max-concurrent:8}")
+    private int maxConcurrent;
+
+    // 最多排队的请求数，要小于 Tomcat 线程数，排队的请求占着线程
+    @Value("${admission.queue-depth:100}")
+    private int queueDepth;
+
+    @Value("${admission.max-wait-ms:5000}")
+    private long maxWaitMs;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong tickets = new AtomicLong();
+    // 最近请求处理耗时的指数滑动平均（纳秒），用来估算等待时间
+    private volatile double averageServiceNanos = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private Timer waitTimer;
+    private Counter rejectedFull;
+    private Counter rejectedTimeout;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxConcurrent, true);
+        meterRegistry.gauge("admission.waiting", waiting);
+        meterRegistry.gauge("admission.active", permits, p -> maxConcurrent - p.availablePermits());
+        waitTimer = Timer.builder("admission.wait").description("患者请求排队等待时间").register(meterRegistry);
+        rejectedFull = Counter.builder("admission.rejected").tag("reason", "queue_full").register(meterRegistry);
+        rejectedTimeout = Counter.builder("admission.rejected").tag("reason", "timeout").register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!enabled || !(handler instanceof HandlerMethod) || request.getAttribute(ADMITTED_AT) != null) {
+            return true;
+        }
+        Object currentUser = request.getAttribute(Constants.CURRENT_USER);
+        if (!(currentUser instanceof Account) || !RoleEnum.USER.name().equals(((Account) currentUser).getRole())) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            // 带超时的 tryAcquire 才遵守公平顺序，有人排队时新来的请求不会插队
+            if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                request.setAttribute(ADMITTED_AT, start);
+                return true;
+            }
+            long ticket = tickets.incrementAndGet();
+            int position = waiting.incrementAndGet();
+            try {
+                long estimatedWaitMs = estimateWaitMs(position);
+                response.setHeader(Constants.QUEUE_TICKET, String.valueOf(ticket));
+                response.setHeader(Constants.QUEUE_WAIT_MS, String.valueOf(estimatedWaitMs));
+                if (position > queueDepth) {
+                    rejectedFull.increment();
+                    throw busy(response, ticket, estimatedWaitMs);
+                }
+                if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                    rejectedTimeout.increment();
+                    throw busy(response, ticket, estimateWaitMs(waiting.get()));
+                }
+            } finally {
+                waiting.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomException(ResultCodeEnum.SYSTEM_BUSY);
+        }
+        long admittedAt = System.nanoTime();
+        waitTimer.record(admittedAt - start, TimeUnit.NANOSECONDS);
+        request.setAttribute(ADMITTED_AT, admittedAt);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.isAsyncStarted()) {
+            return;
+        }
+        Object admittedAt = request.getAttribute(ADMITTED_AT);
+        if (admittedAt != null) {
+            request.removeAttribute(ADMITTED_AT);
+            permits.release();
+            long elapsed = System.nanoTime() - (Long) admittedAt;
+            averageServiceNanos = averageServiceNanos * 0.9 + elapsed * 0.1;
+        }
+    }
+
+    /**
+     * 前面排队的人数 × 平均处理耗时 ÷ 并发数
+     */
+    private long estimateWaitMs(int position) {
+        return TimeUnit.NANOSECONDS.toMillis((long) (position * averageServiceNanos / maxConcurrent));
+    }
+
+    private CustomException busy(HttpServletResponse response, long ticket, long estimatedWaitMs) {
+        long seconds = Math.max(1, (estimatedWaitMs + 999) / 1000);
+        response.setHeader("Retry-After", String.valueOf(seconds));
+        return new CustomException(ResultCodeEnum.SYSTEM_BUSY.code,
+                ResultCodeEnum.SYSTEM_BUSY.msg + "（排队号 " + ticket + "，预计等待 " + seconds + " 秒）");
+    }
+}
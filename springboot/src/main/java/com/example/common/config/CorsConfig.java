@@ -1,5 +1,6 @@
 package com.example.common.config;
 
+import com.example.common.Constants;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.cors.CorsConfiguration;
@@ -19,6 +20,11 @@ public class CorsConfig {
         corsConfiguration.addAllowedOrigin("*"); // 1 设置访问源地址
         corsConfiguration.addAllowedHeader("*"); // 2 设置访问源请求头
         corsConfiguration.addAllowedMethod("*"); // 3 设置访问源请求方法
+        corsConfiguration.addExposedHeader("X-Query-Count"); // 允许前端读取SQL条数检测的响应头
+        corsConfiguration.addExposedHeader("X-N-Plus-One");
+        corsConfiguration.addExposedHeader(Constants.QUEUE_TICKET); // 挂号高峰排队号和预计等待时间
+        corsConfiguration.addExposedHeader(Constants.QUEUE_WAIT_MS);
+        corsConfiguration.addExposedHeader("Retry-After");
         source.registerCorsConfiguration("/**", corsConfiguration); // 4 对接口配置跨域设置
         return new CorsFilter(source);
     }
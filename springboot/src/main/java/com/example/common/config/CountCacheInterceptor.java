@@ -0,0 +1,37 @@
+package com.example.common.config;
+
+import cn.hutool.core.util.StrUtil;
+import com.example.common.cache.CountCache;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * MyBatis 拦截器：执行新增、修改、删除后让对应表的分页总数缓存失效
+ * 表名由 Mapper 名得到，例如 ReserveMapper 对应 reserve 表
+ */
+@Component
+@Intercepts(@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}))
+public class CountCacheInterceptor implements Interceptor {
+
+    @Resource
+    private CountCache countCache;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        if (result instanceof Integer && (Integer) result == 0) {
+            return result;
+        }
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        String mapper = StrUtil.subAfter(StrUtil.subBefore(ms.getId(), ".", true), ".", true);
+        countCache.invalidate(StrUtil.lowerFirst(StrUtil.removeSuffix(mapper, "Mapper")));
+        return result;
+    }
+}
@@ -2,10 +2,9 @@ package com.example.common.config;
 
 import cn.hutool.core.util.ObjectUtil;
 import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.example.common.Constants;
+import com.example.common.cache.AccountCache;
 import com.example.common.enums.ResultCodeEnum;
 import com.example.common.enums.RoleEnum;
 import com.example.entity.Account;
@@ -36,6 +35,8 @@ public class JwtInterceptor implements HandlerInterceptor {
     private DoctorService doctorService;
     @Resource
     private UserService userService;
+    @Resource
+    private AccountCache accountCache;
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
@@ -49,35 +50,48 @@ public class JwtInterceptor implements HandlerInterceptor {
         if (ObjectUtil.isEmpty(token)) {
             throw new CustomException(ResultCodeEnum.TOKEN_INVALID_ERROR);
         }
-        Account account = null;
+        String role;
+        Integer userId;
+        AccountCache.CachedAccount cached;
         try {
             // 解析token获取存储的数据
             String userRole = JWT.decode(token).getAudience().get(0);
-            String userId = userRole.split("-")[0];
-            String role = userRole.split("-")[1];
-            // 根据userId查询数据库
-            if (RoleEnum.ADMIN.name().equals(role)) {
-                account = adminService.selectById(Integer.valueOf(userId));
-            }
-            if (RoleEnum.DOCTOR.name().equals(role)) {
-                account = doctorService.selectById(Integer.valueOf(userId));
-            }
-            if (RoleEnum.USER.name().equals(role)) {
-                account = userService.selectById(Integer.valueOf(userId));
+            userId = Integer.valueOf(userRole.split("-")[0]);
+            role = userRole.split("-")[1];
+            // 先查缓存，没有再根据userId查询数据库
+            cached = accountCache.get(role, userId);
+            if (ObjectUtil.isNull(cached)) {
+                // 查库前取版本号，查库期间账号被修改时不把查到的旧账号放入缓存
+                long stamp = accountCache.stamp(role, userId);
+                Account account = null;
+                if (RoleEnum.ADMIN.name().equals(role)) {
+                    account = adminService.selectById(userId);
+                }
+                if (RoleEnum.DOCTOR.name().equals(role)) {
+                    account = doctorService.selectById(userId);
+                }
+                if (RoleEnum.USER.name().equals(role)) {
+                    account = userService.selectAccountById(userId);
+                }
+                if (ObjectUtil.isNotNull(account)) {
+                    cached = accountCache.put(role, userId, account, stamp);
+                }
             }
         } catch (Exception e) {
             throw new CustomException(ResultCodeEnum.TOKEN_CHECK_ERROR);
         }
-        if (ObjectUtil.isNull(account)) {
+        if (ObjectUtil.isNull(cached)) {
             throw new CustomException(ResultCodeEnum.USER_NOT_EXIST_ERROR);
         }
         try {
-            // 用户密码加签验证 token
-            JWTVerifier jwtVerifier = JWT.require(Algorithm.HMAC256(account.getPassword())).build();
-            jwtVerifier.verify(token); // 验证token
+            // 用户密码加签验证 token，verifier 随账号一起缓存
+            cached.getVerifier().verify(token); // 验证token
         } catch (JWTVerificationException e) {
             throw new CustomException(ResultCodeEnum.TOKEN_CHECK_ERROR);
         }
+        Account account = cached.getAccount();
+        // 把认证通过的用户放到本次请求里，TokenUtils.getCurrentUser 直接取用，不再重复解析token和查库
+        request.setAttribute(Constants.CURRENT_USER, account);
         return true;
     }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package com.example.common.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * N+1 查询检测拦截器
+ * 开启后统计每个请求执行的SQL条数（由 QueryCountInterceptor 计数），同一条语句超过 threshold 次时
+ * 打印告警日志，并在响应头 X-N-Plus-One 中返回超标的语句和次数；X-Query-Count 返回本次请求的SQL总数
+ */
+@Component
+public class NPlusOneInterceptor implements AsyncHandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(NPlusOneInterceptor.class);
+
+    private static final ThreadLocal<RequestQueries> CURRENT = new ThreadLocal<>();
+
+    @Value("${n-plus-one.enabled:false}")
+    private boolean enabled;
+
+    @Value("${n-plus-one.threshold:10}")
+    private int threshold;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (enabled) {
+            CURRENT.set(new RequestQueries(response, threshold));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestQueries queries = CURRENT.get();
+        if (queries == null) {
+            return;
+        }
+        CURRENT.remove();
+        if (queries.flagged) {
+            log.warn("N+1 查询: {} {} -> {}，共{}条SQL，超过{}次的语句: {}", request.getMethod(), request.getRequestURI(),
+                    handlerName(handler), queries.total, threshold, queries.flaggedStatements());
+        }
+    }
+
+    /**
+     * 异步请求：处理线程在这里就还给容器了，afterCompletion 会在其他线程上执行，这里先清掉，不统计异步部分
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        CURRENT.remove();
+    }
+
+    /**
+     * 记录当前请求执行了一条SQL，没有开启检测或不在请求线程中时忽略
+     * 没有请求上下文时（定时任务、线程池里的任务）线程上残留的记录也一并清掉
+     */
+    static void onStatement(String statementId) {
+        RequestQueries queries = CURRENT.get();
+        if (queries == null) {
+            return;
+        }
+        if (RequestContextHolder.getRequestAttributes() == null) {
+            CURRENT.remove();
+            return;
+        }
+        queries.add(statementId);
+    }
+
+    private static String handlerName(Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod method = (HandlerMethod) handler;
+            return method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+        }
+        return String.valueOf(handler);
+    }
+
+    private static class RequestQueries {
+        private final HttpServletResponse response;
+        private final int threshold;
+        private final Map<String, Integer> counts = new LinkedHashMap<>();
+        private int total;
+        private boolean flagged;
+
+        RequestQueries(HttpServletResponse response, int threshold) {
+            this.response = response;
+            this.threshold = threshold;
+        }
+
+        void add(String statementId) {
+            total++;
+            int count = counts.merge(statementId, 1, Integer::sum);
+            // 响应体写出后响应头就改不了了，所以每执行一条SQL就更新一次
+            response.setHeader("X-Query-Count", String.valueOf(total));
+            if (count > threshold) {
+                flagged = true;
+                response.setHeader("X-N-Plus-One", flaggedStatements());
+            }
+        }
+
+        String flaggedStatements() {
+            StringJoiner joiner = new StringJoiner(",");
+            counts.forEach((id, count) -> {
+                if (count > threshold) {
+                    joiner.add(id.substring(id.lastIndexOf('.', id.lastIndexOf('.') - 1) + 1) + "=" + count);
+                }
+            });
+            return joiner.toString();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.common.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 接口并发数统计：按接口路径模板维护正在处理的请求数 http.server.requests.active
+ * 耗时分布和状态码由 Spring Boot 自带的 http.server.requests 统计，Result.code 由 ResultCodeMetricsAdvice 统计
+ */
+@Component
+public class RequestMetricsInterceptor implements HandlerInterceptor {
+
+    private static final String ACTIVE = RequestMetricsInterceptor.class.getName() + ".ACTIVE";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 异步请求（SSE）重新分发时不重复计数
+        if (!(handler instanceof HandlerMethod) || request.getAttribute(ACTIVE) != null) {
+            return true;
+        }
+        String uri = String.valueOf(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+        String method = request.getMethod();
+        AtomicInteger gauge = active.computeIfAbsent(method + " " + uri, k ->
+                meterRegistry.gauge("http.server.requests.active", Tags.of("method", method, "uri", uri), new AtomicInteger()));
+        gauge.incrementAndGet();
+        request.setAttribute(ACTIVE, gauge);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.isAsyncStarted()) {
+            // 异步请求在真正结束后的那次分发里再减
+            return;
+        }
+        Object gauge = request.getAttribute(ACTIVE);
+        if (gauge != null) {
+            request.removeAttribute(ACTIVE);
+            ((AtomicInteger) gauge).decrementAndGet();
+        }
+    }
+}
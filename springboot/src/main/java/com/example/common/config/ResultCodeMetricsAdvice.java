@@ -0,0 +1,56 @@
+package com.example.common.config;
+
+import com.example.common.Result;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按接口统计返回的 Result.code，业务异常（HTTP 状态码仍是200）也能按接口区分出来
+ * 指标名 http.server.results，标签 uri 为接口路径模板
+ */
+// 包含 com.example.exception，GlobalExceptionHandler 返回的 Result 也要统计
+@ControllerAdvice(basePackages = "com.example")
+public class ResultCodeMetricsAdvice implements ResponseBodyAdvice<Object> {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return Result.class.isAssignableFrom(returnType.getParameterType());
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body instanceof Result && request instanceof ServletServerHttpRequest) {
+            Object pattern = ((ServletServerHttpRequest) request).getServletRequest().getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+            String method = request.getMethodValue();
+            String code = String.valueOf(((Result) body).getCode());
+            counters.computeIfAbsent(method + " " + uri + " " + code, k -> Counter.builder("http.server.results")
+                    .description("接口返回的 Result.code 次数")
+                    .tag("method", method)
+                    .tag("uri", uri)
+                    .tag("code", code)
+                    .register(meterRegistry)).increment();
+        }
+        return body;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.common.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Map;
+
+/**
+ * SQL日志开关管理端点，只在管理端口暴露
+ * GET /actuator/sqllog 查看单独开关；POST /actuator/sqllog 传 statement 和 enabled 修改，不传 enabled 表示恢复默认抽样
+ */
+@Component
+@Endpoint(id = "sqllog")
+public class SqlLogEndpoint {
+
+    @Resource
+    private SqlLogInterceptor sqlLogInterceptor;
+
+    @ReadOperation
+    public Map<String, Boolean> flags() {
+        return sqlLogInterceptor.getFlags();
+    }
+
+    @WriteOperation
+    public void setFlag(String statement, @Nullable Boolean enabled) {
+        sqlLogInterceptor.setFlag(statement, enabled);
+    }
+}
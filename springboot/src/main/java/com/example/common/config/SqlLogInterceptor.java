@@ -0,0 +1,263 @@
+package com.example.common.config;
+
+import cn.hutool.core.util.StrUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MyBatis SQL日志拦截器，代替 StdOutImpl 同步打印到控制台
+ * 慢SQL全部记录并带上绑定参数，其余语句按 sample-rate 抽样；也可以按 Mapper 或 Mapper.方法 单独开关
+ * 执行线程只把日志写进无锁环形缓冲区，由定时任务批量输出，缓冲区写满时覆盖最旧的记录。
+ * 写入分两步：先领序号再写槽位，输出时遇到已领序号还没写完的槽位就停下，下次再从这里继续，被覆盖的记录计入 dropped
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class SqlLogInterceptor implements Interceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlLogInterceptor.class);
+
+    @Value("${sql-log.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sql-log.sample-rate:0}")
+    private double sampleRate;
+
+    @Value("${sql-log.slow-ms:500}")
+    private long slowMs;
+
+    @Value("${sql-log.buffer-size:4096}")
+    private int bufferSize;
+
+    // 例如 ReserveMapper=true,UserMapper.selectAll=false；true 表示每次都记录，false 表示不抽样（慢SQL仍然记录）
+    @Value("${sql-log.statements:}")
+    private String[] statements;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Boolean> flags = new ConcurrentHashMap<>();
+    // 语句ID -> 生效的开关，避免每次执行都解析语句ID
+    private final Map<String, Mode> modes = new ConcurrentHashMap<>();
+
+    private AtomicReferenceArray<Line> ring;
+    private int mask;
+    private final AtomicLong head = new AtomicLong();
+    // 只有输出线程读写
+    private long tail;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        // 容量取不小于 buffer-size 的2的幂，下标用位运算计算
+        int size = Integer.highestOneBit(Math.max(bufferSize, 2) - 1) << 1;
+        ring = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        for (String statement : statements) {
+            String[] kv = statement.split("=");
+            if (kv.length == 2) {
+                flags.put(kv[0].trim(), Boolean.valueOf(kv[1].trim()));
+            }
+        }
+        // 记录、慢SQL、丢弃条数注册到监控指标，在管理端口的 /actuator/prometheus 查看
+        FunctionCounter.builder("sql.log.lines", recorded, LongAdder::sum).tag("type", "recorded").register(meterRegistry);
+        FunctionCounter.builder("sql.log.lines", slow, LongAdder::sum).tag("type", "slow").register(meterRegistry);
+        FunctionCounter.builder("sql.log.lines", dropped, LongAdder::sum).tag("type", "dropped").register(meterRegistry);
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (!enabled) {
+            return invocation.proceed();
+        }
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        long start = System.nanoTime();
+        Object result = invocation.proceed();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        boolean isSlow = elapsedMs >= slowMs;
+        Mode mode = modes.computeIfAbsent(ms.getId(), this::resolve);
+        if (isSlow || mode == Mode.ALL
+                || (mode == Mode.SAMPLE && sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+            BoundSql boundSql = invocation.getArgs().length == 6
+                    ? (BoundSql) invocation.getArgs()[5] : ms.getBoundSql(invocation.getArgs()[1]);
+            String rows = result instanceof List ? "rows=" + ((List<?>) result).size() : "updated=" + result;
+            String sql = StrUtil.cleanBlank(boundSql.getSql());
+            if (isSlow) {
+                record("[SLOW] " + ms.getId() + " " + elapsedMs + "ms " + rows + " | " + sql + " | params=" + parameters(ms, boundSql));
+                slow.increment();
+            } else {
+                record(ms.getId() + " " + elapsedMs + "ms " + rows + " | " + sql);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 运行时修改单个 Mapper 或语句的开关，enabled 为空表示恢复默认的抽样
+     */
+    public void setFlag(String statement, Boolean enabled) {
+        if (enabled == null) {
+            flags.remove(statement);
+        } else {
+            flags.put(statement, enabled);
+        }
+        modes.clear();
+    }
+
+    /**
+     * 当前生效的单独开关
+     */
+    public Map<String, Boolean> getFlags() {
+        return new LinkedHashMap<>(flags);
+    }
+
+    /**
+     * 定时把缓冲区里的日志一次性输出
+     */
+    @Scheduled(fixedDelayString = "${sql-log.flush-interval-ms:1000}")
+    @PreDestroy
+    public synchronized void flush() {
+        long h = head.get();
+        if (h - tail > ring.length()) {
+            // 输出跟不上写入，被覆盖的记录算作丢弃
+            dropped.add(h - tail - ring.length());
+            tail = h - ring.length();
+        }
+        if (tail == h) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        while (tail < h) {
+            int index = (int) (tail & mask);
+            Line line = awaitLine(index);
+            if (line == null) {
+                // 写入线程领了序号还没写进来，下次输出时再从这里继续
+                break;
+            }
+            if (line.seq == tail) {
+                // 只清空这一条，写入线程这时可能已经写进了下一圈的记录
+                ring.compareAndSet(index, line, null);
+                sb.append('\n').append(line.text);
+            } else {
+                // 输出期间写入线程已经转了一圈，用更新的记录覆盖了这一条
+                dropped.increment();
+            }
+            tail++;
+        }
+        if (sb.length() > 0) {
+            log.info("SQL:{}", sb);
+        }
+    }
+
+    /**
+     * 慢SQL的绑定参数，密码类字段打码
+     */
+    private String parameters(MappedStatement ms, BoundSql boundSql) {
+        Configuration configuration = ms.getConfiguration();
+        Object parameterObject = boundSql.getParameterObject();
+        List<String> values = new ArrayList<>();
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            String property = mapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameterObject == null) {
+                value = null;
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+                value = parameterObject;
+            } else {
+                value = configuration.newMetaObject(parameterObject).getValue(property);
+            }
+            values.add(StrUtil.containsIgnoreCase(property, "password") ? "******" : String.valueOf(value));
+        }
+        return values.toString();
+    }
+
+    private void record(String line) {
+        long seq = head.getAndIncrement();
+        ring.set((int) (seq & mask), new Line(seq, line));
+        recorded.increment();
+    }
+
+    /**
+     * 取 tail 对应槽位的记录，槽位里还是上一圈的旧记录时说明写入线程还没写完，稍等几次，仍然没写完返回null
+     */
+    private Line awaitLine(int index) {
+        for (int i = 0; i < 100; i++) {
+            Line line = ring.get(index);
+            if (line != null && line.seq >= tail) {
+                return line;
+            }
+            Thread.yield();
+        }
+        return null;
+    }
+
+    /**
+     * 依次按 Mapper.方法、Mapper 查找开关，分页插件生成的 _COUNT 语句跟随原语句
+     */
+    private Mode resolve(String id) {
+        String statement = StrUtil.removeSuffix(id, "_COUNT");
+        String method = StrUtil.subAfter(statement, ".", true);
+        String mapper = StrUtil.subAfter(StrUtil.subBefore(statement, ".", true), ".", true);
+        Boolean flag = flags.get(mapper + "." + method);
+        if (flag == null) {
+            flag = flags.get(mapper);
+        }
+        if (flag == null) {
+            return Mode.SAMPLE;
+        }
+        return flag ? Mode.ALL : Mode.SLOW_ONLY;
+    }
+
+    private enum Mode {
+        ALL, SAMPLE, SLOW_ONLY
+    }
+
+    private static class Line {
+        private final long seq;
+        private final String text;
+
+        Line(long seq, String text) {
+            this.seq = seq;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.common.config;
+
+import cn.hutool.core.util.StrUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyBatis 指标拦截器：按语句统计耗时分布、返回/影响行数和异常次数
+ * 指标名 mybatis.statement，标签 statement 为 Mapper名.方法名，通过 /actuator/prometheus 采集
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class SqlMetricsInterceptor implements Interceptor {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    // 语句ID -> 指标，避免每次执行都到 MeterRegistry 里查找
+    private final Map<String, StatementMeters> meters = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        StatementMeters statementMeters = meters.computeIfAbsent(ms.getId(), id -> new StatementMeters(ms));
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            statementMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (result instanceof List) {
+                statementMeters.rows.record(((List<?>) result).size());
+            } else if (result instanceof Integer) {
+                statementMeters.rows.record((Integer) result);
+            }
+            return result;
+        } catch (Throwable e) {
+            statementMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            Counter.builder("mybatis.statement.errors")
+                    .tag("statement", statementMeters.statement)
+                    .tag("exception", cause(e).getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+            throw e;
+        }
+    }
+
+    /**
+     * 拦截链里出错时 Method.invoke 抛出的是 InvocationTargetException，取出里面真正的异常
+     */
+    private static Throwable cause(Throwable e) {
+        while (e instanceof InvocationTargetException && ((InvocationTargetException) e).getTargetException() != null) {
+            e = ((InvocationTargetException) e).getTargetException();
+        }
+        return e;
+    }
+
+    private class StatementMeters {
+        private final String statement;
+        private final Timer timer;
+        private final DistributionSummary rows;
+
+        StatementMeters(MappedStatement ms) {
+            // com.example.mapper.ReserveMapper.selectAll -> ReserveMapper.selectAll
+            String method = StrUtil.subAfter(ms.getId(), ".", true);
+            String mapper = StrUtil.subAfter(StrUtil.subBefore(ms.getId(), ".", true), ".", true);
+            this.statement = mapper + "." + method;
+            String type = ms.getSqlCommandType().name();
+            this.timer = Timer.builder("mybatis.statement")
+                    .description("MyBatis 语句耗时")
+                    .tag("statement", statement)
+                    .tag("type", type)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.rows = DistributionSummary.builder("mybatis.statement.rows")
+                    .description("MyBatis 语句返回或影响的行数")
+                    .tag("statement", statement)
+                    .tag("type", type)
+                    .register(meterRegistry);
+        }
+    }
+}
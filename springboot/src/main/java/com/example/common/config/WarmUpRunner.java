@@ -0,0 +1,167 @@
+package com.example.common.config;
+
+import com.example.common.Result;
+import com.example.entity.Department;
+import com.example.entity.Doctor;
+import com.example.entity.Notice;
+import com.example.entity.Plan;
+import com.example.entity.Record;
+import com.example.entity.Reserve;
+import com.example.entity.User;
+import com.example.mapper.HomeMapper;
+import com.example.mapper.NoticeMapper;
+import com.example.mapper.RecordMapper;
+import com.example.mapper.ReserveMapper;
+import com.example.mapper.UserMapper;
+import com.example.service.DailyScheduleService;
+import com.example.service.DepartmentService;
+import com.example.service.DoctorService;
+import com.example.service.HomeService;
+import com.example.service.PlanService;
+import com.example.service.ReserveService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.pagehelper.PageHelper;
+import com.github.pagehelper.PageInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 启动预热
+ * Spring Boot 在所有 ApplicationRunner 执行完之后才把就绪状态（/actuator/health/readiness）改为可以接收流量，
+ * 这里在此之前用只读查询把常用 mapper 语句的各个动态 SQL 分支都执行一遍，再反复调用热点查询并序列化结果，
+ * 让 MyBatis 语句解析、Jackson 序列化器和 JIT 编译都提前完成。预热失败不影响启动
+ */
+@Component
+public class WarmUpRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmUpRunner.class);
+
+    @Value("${warm-up.enabled:true}")
+    private boolean enabled;
+
+    // 内存查询和序列化的轮数
+    @Value("${warm-up.iterations:1000}")
+    private int iterations;
+
+    // 其中前多少轮执行数据库查询
+    @Value("${warm-up.sql-iterations:20}")
+    private int sqlIterations;
+
+    @Resource
+    private ReserveMapper reserveMapper;
+    @Resource
+    private RecordMapper recordMapper;
+    @Resource
+    private UserMapper userMapper;
+    @Resource
+    private NoticeMapper noticeMapper;
+    @Resource
+    private HomeMapper homeMapper;
+    @Resource
+    private DoctorService doctorService;
+    @Resource
+    private DepartmentService departmentService;
+    @Resource
+    private DailyScheduleService dailyScheduleService;
+    @Resource
+    private PlanService planService;
+    @Resource
+    private HomeService homeService;
+    @Resource
+    private ReserveService reserveService;
+    @Resource
+    private ObjectMapper objectMapper;
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        int done = 0;
+        try {
+            for (; done < iterations; done++) {
+                if (done < sqlIterations) {
+                    warmUpMappers();
+                }
+                warmUpReads();
+            }
+        } catch (Exception e) {
+            log.warn("启动预热中断，已完成 {} 轮", done, e);
+        }
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("application.warmup").description("启动预热耗时").register(meterRegistry).record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("启动预热完成：{} 轮，耗时 {} ms", done, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    /**
+     * 按接口实际使用的条件组合执行一遍查询语句，分页语句连同 PageHelper 生成的 count 语句一起预热
+     */
+    private void warmUpMappers() throws Exception {
+        LocalDate today = LocalDate.now();
+        List<Doctor> doctors = doctorService.selectAll(new Doctor());
+        Integer doctorId = doctors.isEmpty() ? 0 : doctors.get(0).getId();
+
+        Reserve reserve = new Reserve();
+        serialize(PageInfo.of(page(() -> reserveMapper.selectAll(reserve))));
+        reserve.setDoctorId(doctorId);
+        reserve.setTime(today);
+        serialize(PageInfo.of(page(() -> reserveMapper.selectAll(reserve))));
+        reserve.setDoctorId(null);
+        reserve.setUserId(0);
+        serialize(PageInfo.of(page(() -> reserveMapper.selectAll(reserve))));
+
+        Record record = new Record();
+        serialize(PageInfo.of(page(() -> recordMapper.selectAll(record))));
+        record.setDoctorId(doctorId);
+        record.setTime(today);
+        serialize(PageInfo.of(page(() -> recordMapper.selectAll(record))));
+
+        serialize(PageInfo.of(page(() -> userMapper.selectAll(new User()))));
+        serialize(PageInfo.of(page(() -> noticeMapper.selectAll(new Notice()))));
+
+        List<Integer> doctorIds = doctors.stream().limit(10).map(Doctor::getId).collect(Collectors.toList());
+        if (!doctorIds.isEmpty()) {
+            reserveMapper.selectBookedByDay(doctorIds, today, today.plusDays(6));
+        }
+        homeMapper.getTodayCalled(today);
+        homeMapper.getRegisterCountByDay(today.minusDays(6), today);
+    }
+
+    /**
+     * 挂号页、首页等热点查询，结果按接口返回的格式序列化
+     */
+    private void warmUpReads() throws Exception {
+        serialize(doctorService.selectPage2(new Doctor(), 1, 10));
+        serialize(doctorService.selectPage(new Doctor(), 1, 10));
+        serialize(doctorService.getTodaySchedule());
+        serialize(reserveService.selectCalendar(null, null));
+        serialize(departmentService.selectAll(new Department()));
+        serialize(planService.selectAll(new Plan()));
+        serialize(homeService.getStatistics());
+    }
+
+    private <T> List<T> page(Supplier<List<T>> query) {
+        PageHelper.startPage(1, 10);
+        return query.get();
+    }
+
+    private void serialize(Object data) throws Exception {
+        objectMapper.writeValueAsBytes(Result.success(data));
+    }
+}
@@ -11,14 +11,28 @@ public class WebConfig implements  WebMvcConfigurer {
 
     @Resource
     private JwtInterceptor jwtInterceptor;
+    @Resource
+    private NPlusOneInterceptor nPlusOneInterceptor;
+    @Resource
+    private RequestMetricsInterceptor requestMetricsInterceptor;
+    @Resource
+    private AdmissionInterceptor admissionInterceptor;
 
     // 加自定义拦截器JwtInterceptor，设置拦截规则
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // 放在 JwtInterceptor 前面，认证失败的请求和认证时查账号的SQL也计入
+        registry.addInterceptor(requestMetricsInterceptor).addPathPatterns("/**");
+        registry.addInterceptor(nPlusOneInterceptor).addPathPatterns("/**");
         registry.addInterceptor(jwtInterceptor).addPathPatterns("/**")
                 .excludePathPatterns("/")
                 .excludePathPatterns("/login")
                 .excludePathPatterns("/register")
                 .excludePathPatterns("/files/**");
+        // 放在 JwtInterceptor 后面，按认证出的角色只对患者排队
+        registry.addInterceptor(admissionInterceptor)
+                .addPathPatterns("/reserve/add")
+                .addPathPatterns("/reserve/calendar")
+                .addPathPatterns("/doctor/selectPage2");
     }
 }
\ No newline at end of file
@@ -15,6 +15,7 @@ public enum ResultCodeEnum {
     USER_NOT_EXIST_ERROR("5004", "用户不存在"),
     PARAM_PASSWORD_ERROR("5005", "原密码输入错误"),
     PLAN_EXIST_ERROR("5006", "该医生已有当天的排班，请勿重复添加"),
+    SYSTEM_BUSY("5007", "当前挂号人数较多，请稍后再试"),
     ;
 
     public String code;
@@ -1,18 +1,26 @@
 package com.example.controller;
 
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.lang.Dict;
-import cn.hutool.core.thread.ThreadUtil;
 import cn.hutool.core.util.StrUtil;
 import com.example.common.Result;
+import com.example.service.FileStorageService;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.OutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,8 +32,8 @@ import java.util.Map;
 @RequestMapping("/files")
 public class FileController {
 
-    // 文件上传存储路径
-    private static final String filePath = System.getProperty("user.dir") + "/files/";
+    // 小文件直接写出比 sendfile 更快，和 Tomcat DefaultServlet 的默认值一致
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
 
     @Value("${server.port:9090}")
     private String port;
@@ -33,65 +41,147 @@ public class FileController {
     @Value("${ip:localhost}")
     private String ip;
 
+    @Resource
+    private FileStorageService fileStorageService;
+
     /**
      * 文件上传
      */
     @PostMapping("/upload")
     public Result upload(MultipartFile file) {
-        String flag;
-        synchronized (FileController.class) {
-            flag = System.currentTimeMillis() + "";
-            ThreadUtil.sleep(1L);
-        }
         String fileName = file.getOriginalFilename();
+        String name;
         try {
-            if (!FileUtil.isDirectory(filePath)) {
-                FileUtil.mkdir(filePath);
-            }
             // 文件存储形式：时间戳-文件名
-            FileUtil.writeBytes(file.getBytes(), filePath + flag + "-" + fileName);  // ***/manager/files/1697438073596-avatar.png
+            name = fileStorageService.store(file);  // ***/manager/files/1697438073596-avatar.png
             System.out.println(fileName + "--上传成功");
-
         } catch (Exception e) {
             System.err.println(fileName + "--文件上传失败");
+            return Result.error();
         }
         String http = "http://" + ip + ":" + port + "/files/";
-        return Result.success(http + flag + "-" + fileName);  //  http://localhost:9090/files/1697438073596-avatar.png
+        return Result.success(http + name);  //  http://localhost:9090/files/1697438073596-avatar.png
     }
 
-
     /**
      * 获取文件
+     * 文件名带时间戳前缀，内容不会变，可以让浏览器永久缓存；支持 Range 断点续传和 ETag/Last-Modified 协商缓存
      *
      * @param flag
+     * @param request
      * @param response
      */
     @GetMapping("/{flag}")   //  1697438073596-avatar.png
-    public void avatarPath(@PathVariable String flag, HttpServletResponse response) {
-        OutputStream os;
+    public void avatarPath(@PathVariable String flag, HttpServletRequest request, HttpServletResponse response) {
+        if (StrUtil.isEmpty(flag)) {
+            return;
+        }
         try {
-            if (StrUtil.isNotEmpty(flag)) {
-                response.addHeader("Content-Disposition", "attachment;filename=" + URLEncoder.encode(flag, "UTF-8"));
-                response.setContentType("application/octet-stream");
-                byte[] bytes = FileUtil.readBytes(filePath + flag);
-                os = response.getOutputStream();
-                os.write(bytes);
-                os.flush();
-                os.close();
+            File file = fileStorageService.resolve(flag);
+            if (file == null || !file.isFile()) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            long length = file.length();
+            long lastModified = file.lastModified();
+            String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            // 浏览器缓存的版本没变，直接返回304，不读文件内容
+            if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+                return;
             }
+
+            long start = 0;
+            long end = length - 1;
+            String range = request.getHeader(HttpHeaders.RANGE);
+            String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+            // 只支持单段 Range；If-Range 和当前版本不一致时，忽略 Range 返回整个文件
+            if (StrUtil.startWith(range, "bytes=") && !range.contains(",") && (StrUtil.isEmpty(ifRange) || etag.equals(ifRange))) {
+                long[] bytes = parseRange(range, length);
+                if (bytes == null) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return;
+                }
+                start = bytes[0];
+                end = bytes[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+            response.addHeader("Content-Disposition", "attachment;filename=" + URLEncoder.encode(flag, "UTF-8"));
+            response.setContentType("application/octet-stream");
+            response.setContentLengthLong(end - start + 1);
+            if ("HEAD".equals(request.getMethod()) || length == 0) {
+                return;
+            }
+            writeFile(file, start, end, request, response);
         } catch (Exception e) {
             System.out.println("文件下载失败");
         }
     }
 
+    /**
+     * 解析单段 Range：bytes=start-end、bytes=start-、bytes=-suffix，范围不合法返回null
+     */
+    private long[] parseRange(String range, long length) {
+        String[] parts = range.substring("bytes=".length()).trim().split("-", 2);
+        try {
+            long start;
+            long end;
+            if (parts[0].isEmpty()) {
+                // 最后 n 个字节
+                long suffix = Long.parseLong(parts[1].trim());
+                start = Math.max(length - suffix, 0);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(parts[0].trim());
+                end = parts.length < 2 || parts[1].trim().isEmpty() ? length - 1 : Math.min(Long.parseLong(parts[1].trim()), length - 1);
+            }
+            if (start > end || start >= length) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 输出文件内容，不把整个文件读进内存
+     * Tomcat 支持 sendfile 时交给 Tomcat 零拷贝发送，否则用 FileChannel.transferTo 分段写出
+     */
+    private void writeFile(File file, long start, long end, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support")) && file.length() >= SENDFILE_MIN_SIZE) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename", file.getCanonicalPath());
+            request.setAttribute("org.apache.tomcat.sendfile.start", start);
+            request.setAttribute("org.apache.tomcat.sendfile.end", end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+        response.flushBuffer();
+    }
+
     /**
      * 删除文件
      *
      * @param flag
      */
     @DeleteMapping("/{flag}")
-    public void delFile(@PathVariable String flag) {
-        FileUtil.del(filePath + flag);
+    public void delFile(@PathVariable String flag) throws IOException {
+        fileStorageService.delete(flag);
         System.out.println("删除文件" + flag + "成功");
     }
 
@@ -100,21 +190,22 @@ public class FileController {
      */
     @PostMapping("/wang/upload")
     public Map<String, Object> wangEditorUpload(MultipartFile file) {
-        String flag = System.currentTimeMillis() + "";
         String fileName = file.getOriginalFilename();
+        Map<String, Object> resMap = new HashMap<>();
+        String name;
         try {
             // 文件存储形式：时间戳-文件名
-            FileUtil.writeBytes(file.getBytes(), filePath + flag + "-" + fileName);
+            name = fileStorageService.store(file);
             System.out.println(fileName + "--上传成功");
-            Thread.sleep(1L);
         } catch (Exception e) {
             System.err.println(fileName + "--文件上传失败");
+            resMap.put("errno", 1);
+            return resMap;
         }
         String http = "http://" + ip + ":" + port + "/files/";
-        Map<String, Object> resMap = new HashMap<>();
         // wangEditor上传图片成功后， 需要返回的参数
         resMap.put("errno", 0);
-        resMap.put("data", CollUtil.newArrayList(Dict.create().set("url", http + flag + "-" + fileName)));
+        resMap.put("data", CollUtil.newArrayList(Dict.create().set("url", http + name)));
         return resMap;
     }
 
@@ -1,13 +1,27 @@
 package com.example.controller;
 
+import cn.hutool.core.util.ObjectUtil;
+import com.example.common.Constants;
 import com.example.common.Result;
+import com.example.common.cache.IdempotencyCache;
+import com.example.common.enums.RoleEnum;
+import com.example.entity.Account;
+import com.example.entity.DoctorCalendar;
+import com.example.entity.QueueStatus;
 import com.example.entity.Reserve;
+import com.example.exception.CustomException;
+import com.example.service.CallQueueService;
 import com.example.service.ReserveService;
+import com.example.utils.TokenUtils;
 import com.github.pagehelper.PageInfo;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.annotation.Resource;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * 预约挂号信息表前端操作接口
@@ -18,14 +32,46 @@ public class ReserveController {
 
     @Resource
     private ReserveService reserveService;
+    @Resource
+    private CallQueueService callQueueService;
+    @Resource
+    private IdempotencyCache idempotencyCache;
 
     /**
-     * 新增
+     * 新增，带幂等key请求头时同一个key只会挂一次号，重复提交返回第一次的挂号结果
+     * 患者只能给自己挂号；幂等key按当前登录的账号隔离，同一个key换了医生或日期会被拒绝
      */
     @PostMapping("/add")
-    public Result add(@RequestBody Reserve reserve) {
-        reserveService.add(reserve);
-        return Result.success();
+    public Result add(@RequestBody Reserve reserve,
+                      @RequestHeader(value = Constants.IDEMPOTENCY_KEY, required = false) String requestKey) {
+        Account currentUser = TokenUtils.getCurrentUser();
+        if (RoleEnum.USER.name().equals(currentUser.getRole())) {
+            reserve.setUserId(currentUser.getId());
+        }
+        if (ObjectUtil.isEmpty(requestKey)) {
+            return Result.success(reserveService.add(reserve, null));
+        }
+        if (requestKey.length() > 64) {
+            throw new CustomException("-1", "幂等key长度不能超过64");
+        }
+        String key = "reserve-" + currentUser.getRole() + "-" + currentUser.getId() + "-" + reserve.getUserId() + "-" + requestKey;
+        String fingerprint = reserve.getDoctorId() + "|" + reserve.getTime();
+        Reserve result = idempotencyCache.execute(key, fingerprint, () -> {
+            Reserve existing = reserveService.selectByRequestKey(reserve.getUserId(), requestKey);
+            if (existing != null && !sameReserve(existing, reserve)) {
+                throw new CustomException("-1", "该幂等key已用于其他请求，请重新提交");
+            }
+            return existing;
+        }, () -> reserveService.add(reserve, requestKey));
+        return Result.success(result);
+    }
+
+    /**
+     * 数据库里按幂等key查到的挂号和这次请求是否是同一个医生同一天，不传日期的请求按今天算
+     */
+    private static boolean sameReserve(Reserve existing, Reserve request) {
+        LocalDate time = request.getTime() == null ? LocalDate.now() : request.getTime();
+        return Objects.equals(existing.getDoctorId(), request.getDoctorId()) && time.equals(existing.getTime());
     }
 
     /**
@@ -84,4 +130,40 @@ public class ReserveController {
         return Result.success(page);
     }
 
-}
\ No newline at end of file
+    /**
+     * 可预约日历：一个医生或一个科室所有医生从今天开始每天的剩余号数
+     */
+    @GetMapping("/calendar")
+    public Result calendar(@RequestParam(required = false) Integer doctorId,
+                           @RequestParam(required = false) Integer departmentId) {
+        List<DoctorCalendar> list = reserveService.selectCalendar(doctorId, departmentId);
+        return Result.success(list);
+    }
+
+    /**
+     * 叫下一个号，医生叫自己的号，管理员需要传 doctorId，患者不能叫号
+     */
+    @PostMapping("/callNext")
+    public Result callNext(@RequestParam(required = false) Integer doctorId) {
+        QueueStatus status = callQueueService.callNext(doctorId);
+        return Result.success(status);
+    }
+
+    /**
+     * 查询医生当天的叫号队列
+     */
+    @GetMapping("/queue/{doctorId}")
+    public Result queue(@PathVariable Integer doctorId) {
+        QueueStatus status = callQueueService.getStatus(doctorId);
+        return Result.success(status);
+    }
+
+    /**
+     * 订阅医生叫号队列的变化（SSE），token 通过 url 参数传递
+     */
+    @GetMapping(value = "/queue/subscribe/{doctorId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@PathVariable Integer doctorId) {
+        return callQueueService.subscribe(doctorId);
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.example.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 医生某天的号源情况
+*/
+public class Availability implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** 医生ID */
+    private Integer doctorId;
+    /** 日期 */
+    private LocalDate time;
+    /** 排班总号数 */
+    private Integer num;
+    /** 已挂号数量 */
+    private Integer booked;
+
+    public Integer getDoctorId() {
+        return doctorId;
+    }
+
+    public void setDoctorId(Integer doctorId) {
+        this.doctorId = doctorId;
+    }
+
+    public LocalDate getTime() {
+        return time;
+    }
+
+    public void setTime(LocalDate time) {
+        this.time = time;
+    }
+
+    public Integer getNum() {
+        return num;
+    }
+
+    public void setNum(Integer num) {
+        this.num = num;
+    }
+
+    public Integer getBooked() {
+        return booked;
+    }
+
+    public void setBooked(Integer booked) {
+        this.booked = booked;
+    }
+}
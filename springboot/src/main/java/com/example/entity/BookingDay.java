@@ -0,0 +1,16 @@
+package com.example.entity;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * 医生某一天的号源
+ */
+@Data
+public class BookingDay {
+    private LocalDate time;      // 日期
+    private String week;         // 星期几
+    private Integer num;         // 排班总号数，没有排班为0
+    private Integer remaining;   // 剩余号数
+}
@@ -0,0 +1,17 @@
+package com.example.entity;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 医生可预约日历：从今天开始若干天的号源
+ */
+@Data
+public class DoctorCalendar {
+    private Integer doctorId;
+    private String doctorName;
+    private String departmentName;
+    private Double price;           // 挂号费
+    private List<BookingDay> days;  // 按日期排列
+}
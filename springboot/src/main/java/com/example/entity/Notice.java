@@ -18,6 +18,8 @@ public class Notice implements Serializable {
     private String time;
     /** 创建人 */
     private String user;
+    /** 游标翻页：只查询ID小于该值的记录 */
+    private Integer afterId;
 
     public Integer getId() {
         return id;
@@ -59,4 +61,11 @@ public class Notice implements Serializable {
         this.user = user;
     }
 
-}
\ No newline at end of file
+    public Integer getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(Integer afterId) {
+        this.afterId = afterId;
+    }
+}
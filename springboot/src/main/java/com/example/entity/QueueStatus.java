@@ -0,0 +1,19 @@
+package com.example.entity;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 医生当天叫号队列状态
+ */
+@Data
+public class QueueStatus {
+    private Integer doctorId;
+    private LocalDate time;           // 日期
+    private Integer currentNo;        // 当前叫到的号，还没开始叫号时为空
+    private List<Integer> waitingNos; // 候诊中的号，按叫号顺序排列
+    private Integer myNo;             // 患者自己的号（仅患者查询时返回）
+    private Integer ahead;            // 患者前面还有几人候诊（仅患者查询时返回）
+}
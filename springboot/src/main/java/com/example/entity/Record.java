@@ -1,6 +1,9 @@
 package com.example.entity;
 
+import org.springframework.format.annotation.DateTimeFormat;
+
 import java.io.Serializable;
+import java.time.LocalDate;
 
 /**
  * 就诊记录表
@@ -12,13 +15,16 @@ public class Record implements Serializable {
     private Integer id;
     private Integer userId;
     private Integer doctorId;
-    private String time;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate time;
     private String medicalRecord;
     private String inhospital;
     private String inhostpitalRecord;
 
     private String userName;
     private String doctorName;
+    /** 游标翻页：只查询ID小于该值的记录 */
+    private Integer afterId;
 
     public Integer getId() {
         return id;
@@ -44,11 +50,11 @@ public class Record implements Serializable {
         this.doctorId = doctorId;
     }
 
-    public String getTime() {
+    public LocalDate getTime() {
         return time;
     }
 
-    public void setTime(String time) {
+    public void setTime(LocalDate time) {
         this.time = time;
     }
 
@@ -91,4 +97,12 @@ public class Record implements Serializable {
     public void setDoctorName(String doctorName) {
         this.doctorName = doctorName;
     }
-}
\ No newline at end of file
+
+    public Integer getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(Integer afterId) {
+        this.afterId = afterId;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.entity;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * 某一天的挂号量
+ */
+@Data
+public class RegisterCount {
+    private LocalDate time;  // 日期
+    private Integer total;   // 挂号量
+}
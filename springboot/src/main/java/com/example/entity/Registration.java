@@ -18,6 +18,8 @@ public class Registration implements Serializable {
     private String hosStatus;
 
     private String userName;
+    /** 游标翻页：只查询ID小于该值的记录 */
+    private Integer afterId;
 
     public Integer getId() {
         return id;
@@ -82,4 +84,12 @@ public class Registration implements Serializable {
     public void setUserName(String userName) {
         this.userName = userName;
     }
-}
\ No newline at end of file
+
+    public Integer getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(Integer afterId) {
+        this.afterId = afterId;
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.entity;
 
+import org.springframework.format.annotation.DateTimeFormat;
+
 import java.io.Serializable;
+import java.time.LocalDate;
 
 /**
  * 预约挂号表
@@ -12,12 +15,16 @@ public class Reserve implements Serializable {
     private Integer id;
     private Integer doctorId;
     private Integer userId;
-    private String time;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate time;
     private String status;
+    /** 候诊号，同一医生同一天按挂号顺序从1开始 */
+    private Integer queueNo;
 
     private String doctorName;
     private String userName;
-
+    /** 游标翻页：只查询ID小于该值的记录 */
+    private Integer afterId;
 
     public Integer getId() {
         return id;
@@ -43,14 +50,22 @@ public class Reserve implements Serializable {
         this.userId = userId;
     }
 
-    public String getTime() {
+    public LocalDate getTime() {
         return time;
     }
 
-    public void setTime(String time) {
+    public void setTime(LocalDate time) {
         this.time = time;
     }
 
+    public Integer getQueueNo() {
+        return queueNo;
+    }
+
+    public void setQueueNo(Integer queueNo) {
+        this.queueNo = queueNo;
+    }
+
     public String getStatus() {
         return status;
     }
@@ -74,4 +89,12 @@ public class Reserve implements Serializable {
     public void setUserName(String userName) {
         this.userName = userName;
     }
-}
\ No newline at end of file
+
+    public Integer getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(Integer afterId) {
+        this.afterId = afterId;
+    }
+}
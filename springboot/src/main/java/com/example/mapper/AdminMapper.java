@@ -1,6 +1,7 @@
 package com.example.mapper;
 
 import com.example.entity.Admin;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.util.List;
@@ -20,6 +21,11 @@ public interface AdminMapper {
     */
     int deleteById(Integer id);
 
+    /**
+      * 批量删除
+    */
+    int deleteByIds(@Param("ids") List<Integer> ids);
+
     /**
       * 修改
     */
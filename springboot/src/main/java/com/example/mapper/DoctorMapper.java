@@ -3,7 +3,6 @@ import com.example.entity.Doctor;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import java.util.List;
-import java.util.Map;
 /**
  * 操作doctor相关数据接口
  */
@@ -16,6 +15,10 @@ public interface DoctorMapper {
      * 删除
      */
     int deleteById(Integer id);
+    /**
+     * 批量删除
+     */
+    int deleteByIds(@Param("ids") List<Integer> ids);
     /**
      * 修改
      */
@@ -30,10 +33,4 @@ public interface DoctorMapper {
     List<Doctor> selectAll(Doctor doctor);
     @Select("select * from doctor where username = #{username}")
     Doctor selectByUsername(String username);
-
-    /**
-     * 查询今日坐诊医生排班
-     * @param week 今日星期几
-     */
-    List<Map<String, Object>> selectTodaySchedule(@Param("week") String week);
 }
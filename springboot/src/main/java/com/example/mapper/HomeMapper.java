@@ -0,0 +1,39 @@
+package com.example.mapper;
+
+import com.example.entity.RegisterCount;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 首页统计相关数据接口
+*/
+public interface HomeMapper {
+
+    /**
+      * 今日已叫号人数
+    */
+    Integer getTodayCalled(@Param("today") LocalDate today);
+
+    /**
+      * 医生总数
+    */
+    Integer getDoctorCount();
+
+    /**
+      * 患者总数
+    */
+    Integer getPatientCount();
+
+    /**
+      * 管理员总数
+    */
+    Integer getAdminCount();
+
+    /**
+      * 按天统计挂号量，没有挂号的日期不返回
+    */
+    List<RegisterCount> getRegisterCountByDay(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+}
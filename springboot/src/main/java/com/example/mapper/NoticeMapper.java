@@ -1,6 +1,7 @@
 package com.example.mapper;
 
 import com.example.entity.Notice;
+import org.apache.ibatis.annotations.Param;
 import java.util.List;
 
 /**
@@ -18,6 +19,11 @@ public interface NoticeMapper {
     */
     int deleteById(Integer id);
 
+    /**
+      * 批量删除
+    */
+    int deleteByIds(@Param("ids") List<Integer> ids);
+
     /**
       * 修改
     */
@@ -21,6 +21,11 @@ public interface PlanMapper {
     */
     int deleteById(Integer id);
 
+    /**
+      * 批量删除
+    */
+    int deleteByIds(@Param("ids") List<Integer> ids);
+
     /**
       * 修改
     */
@@ -1,6 +1,7 @@
 package com.example.mapper;
 
 import com.example.entity.Record;
+import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
 
@@ -19,6 +20,11 @@ public interface RecordMapper {
     */
     int deleteById(Integer id);
 
+    /**
+      * 批量删除
+    */
+    int deleteByIds(@Param("ids") List<Integer> ids);
+
     /**
       * 修改
     */
@@ -1,7 +1,10 @@
 package com.example.mapper;
 
+import com.example.entity.Availability;
 import com.example.entity.Reserve;
+import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -19,6 +22,11 @@ public interface ReserveMapper {
     */
     int deleteById(Integer id);
 
+    /**
+      * 批量删除
+    */
+    int deleteByIds(@Param("ids") List<Integer> ids);
+
     /**
       * 修改
     */
@@ -34,4 +42,29 @@ public interface ReserveMapper {
     */
     List<Reserve> selectAll(Reserve reserve);
 
+    /**
+      * 根据ID批量查询并加行锁，按ID顺序加锁
+    */
+    List<Reserve> selectByIdsForUpdate(@Param("ids") List<Integer> ids);
+
+    /**
+      * 新增挂号，requestKey 为客户端的幂等key，可以为空；同一患者同一天重复挂同一医生的号时由唯一索引拦下
+    */
+    int insertWithRequestKey(@Param("reserve") Reserve reserve, @Param("requestKey") String requestKey);
+
+    /**
+      * 保存候诊号
+    */
+    int updateQueueNo(@Param("id") Integer id, @Param("queueNo") Integer queueNo);
+
+    /**
+      * 根据患者和幂等key查询挂号
+    */
+    Reserve selectByRequestKey(@Param("userId") Integer userId, @Param("requestKey") String requestKey);
+
+    /**
+      * 按 医生+日期 统计 from 到 to（含）之间的挂号数量
+    */
+    List<Availability> selectBookedByDay(@Param("doctorIds") List<Integer> doctorIds, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.example.mapper;
+
+import com.example.entity.Availability;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 操作reserve_slot（医生每天的剩余号数）相关数据接口
+*/
+public interface ReserveSlotMapper {
+
+    /**
+      * 查询剩余号数，这一天还没有生成时返回null
+    */
+    Integer selectRemaining(@Param("doctorId") Integer doctorId, @Param("time") LocalDate time);
+
+    /**
+      * 查询 from 到 to（含）之间已经生成的行，只返回医生ID和日期
+    */
+    List<Availability> selectKeys(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+      * 生成这一天的剩余号数（排班号数减去已挂号数），已经存在时忽略
+    */
+    int insertIfAbsent(@Param("doctorId") Integer doctorId, @Param("time") LocalDate time, @Param("capacity") Integer capacity);
+
+    /**
+      * 占用一个号并发下一个候诊号，号已挂满时影响0行
+    */
+    int decrement(@Param("doctorId") Integer doctorId, @Param("time") LocalDate time);
+
+    /**
+      * 最后发出的候诊号，在 decrement 之后同一个事务里查询就是本次挂号的号
+    */
+    Integer selectIssued(@Param("doctorId") Integer doctorId, @Param("time") LocalDate time);
+
+    /**
+      * 退回号，count 为退回的数量
+    */
+    int increment(@Param("doctorId") Integer doctorId, @Param("time") LocalDate time, @Param("count") Integer count);
+
+    /**
+      * 一条语句退回多个医生、多天的号，每个 slot 的 booked 为这一天退回的数量
+    */
+    int incrementBatch(@Param("slots") List<Availability> slots);
+
+    /**
+      * 排班号数变化后，按新旧号数的差调整这些天的剩余号数
+    */
+    int updateCapacity(@Param("doctorId") Integer doctorId, @Param("times") List<LocalDate> times, @Param("capacity") Integer capacity);
+}
@@ -1,7 +1,9 @@
 package com.example.mapper;
 
 import com.example.entity.User;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 
@@ -20,6 +22,11 @@ public interface UserMapper {
     */
     int deleteById(Integer id);
 
+    /**
+      * 批量删除
+    */
+    int deleteByIds(@Param("ids") List<Integer> ids);
+
     /**
       * 修改
     */
@@ -37,4 +44,21 @@ public interface UserMapper {
 
     @Select("select * from user where username = #{username}")
     User selectByUsername(String username);
+
+    /**
+      * 扣除余额，余额不足时不更新，返回影响行数
+    */
+    @Update("update user set account = account - #{amount} where id = #{id} and account >= #{amount}")
+    int deductAccount(@Param("id") Integer id, @Param("amount") Double amount);
+
+    /**
+      * 退回余额
+    */
+    @Update("update user set account = account + #{amount} where id = #{id}")
+    int refundAccount(@Param("id") Integer id, @Param("amount") Double amount);
+
+    /**
+      * 按患者汇总退回一批挂号的挂号费，userIds 为这批挂号的患者
+    */
+    int refundByReserveIds(@Param("userIds") List<Integer> userIds, @Param("reserveIds") List<Integer> reserveIds);
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package com.example.service;
 
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.util.ObjectUtil;
 import com.example.common.Constants;
+import com.example.common.cache.AccountCache;
 import com.example.common.enums.ResultCodeEnum;
 import com.example.common.enums.RoleEnum;
 import com.example.entity.Account;
@@ -13,6 +15,7 @@ import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.List;
@@ -25,6 +28,10 @@ public class AdminService {
 
     @Resource
     private AdminMapper adminMapper;
+    @Resource
+    private AccountCache accountCache;
+    @Resource
+    private HomeService homeService;
 
     /**
      * 新增
@@ -42,21 +49,27 @@ public class AdminService {
         }
         admin.setRole(RoleEnum.ADMIN.name());
         adminMapper.insert(admin);
+        homeService.onAccountAdded(RoleEnum.ADMIN);
     }
 
     /**
      * 删除
      */
     public void deleteById(Integer id) {
-        adminMapper.deleteById(id);
+        homeService.onAccountDeleted(RoleEnum.ADMIN, adminMapper.deleteById(id));
+        accountCache.invalidate(RoleEnum.ADMIN.name(), id);
     }
 
     /**
      * 批量删除
      */
+    @Transactional
     public void deleteBatch(List<Integer> ids) {
+        for (List<Integer> batch : ListUtil.partition(ids, Constants.DELETE_BATCH_SIZE)) {
+            homeService.onAccountDeleted(RoleEnum.ADMIN, adminMapper.deleteByIds(batch));
+        }
         for (Integer id : ids) {
-            adminMapper.deleteById(id);
+            accountCache.invalidate(RoleEnum.ADMIN.name(), id);
         }
     }
 
@@ -65,6 +78,7 @@ public class AdminService {
      */
     public void updateById(Admin admin) {
         adminMapper.updateById(admin);
+        accountCache.invalidate(RoleEnum.ADMIN.name(), admin.getId());
     }
 
     /**
@@ -130,6 +144,7 @@ public class AdminService {
         }
         dbAdmin.setPassword(account.getNewPassword());
         adminMapper.updateById(dbAdmin);
+        accountCache.invalidate(RoleEnum.ADMIN.name(), dbAdmin.getId());
     }
 
 }
\ No newline at end of file
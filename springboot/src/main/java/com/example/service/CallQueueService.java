@@ -0,0 +1,396 @@
+package com.example.service;
+
+import com.example.common.enums.CallEnum;
+import com.example.common.enums.RoleEnum;
+import com.example.entity.Account;
+import com.example.entity.QueueStatus;
+import com.example.entity.Reserve;
+import com.example.exception.CustomException;
+import com.example.mapper.ReserveMapper;
+import com.example.utils.TokenUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 叫号队列业务处理
+ * 按医生在内存中维护当天的候诊队列，首次访问时从当天的挂号记录构建，之后由挂号、退号、叫号增量维护；
+ * 候诊号是挂号时保存在数据库里的 queue_no，重启后重新构建的队列号不变。
+ * 队列每次变化都通过 SSE 推送给订阅了该医生的候诊大屏和患者页面：队列锁里只更新队列、生成快照，
+ * 快照交给推送线程按医生依次发送，浏览器再慢也不会卡住挂号、退号和叫号的请求
+ **/
+@Service
+public class CallQueueService {
+
+    private static final Logger log = LoggerFactory.getLogger(CallQueueService.class);
+
+    // SSE 连接超时时间，超时后浏览器的 EventSource 会自动重连
+    private static final long SSE_TIMEOUT = 30 * 60 * 1000L;
+
+    // 推送线程数，同一个医生的推送只在一个线程上依次执行
+    @Value("${call-queue.push-threads:4}")
+    private int pushThreads;
+
+    @Resource
+    private ReserveMapper reserveMapper;
+    @Resource
+    private HomeService homeService;
+
+    private final ConcurrentHashMap<Integer, DoctorQueue> queues = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Publisher> publishers = new ConcurrentHashMap<>();
+    private ExecutorService pushExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNo = new AtomicInteger();
+        pushExecutor = Executors.newFixedThreadPool(Math.max(pushThreads, 1), runnable -> {
+            Thread thread = new Thread(runnable, "call-queue-push-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pushExecutor.shutdownNow();
+    }
+
+    /**
+     * 叫下一个号，医生只能叫自己的号，管理员可以叫任意医生的号，其他角色不能叫号
+     */
+    public QueueStatus callNext(Integer doctorId) {
+        doctorId = resolveDoctorId(doctorId);
+        DoctorQueue queue = getQueue(doctorId);
+        Entry next;
+        QueueStatus status;
+        // 锁里只从队列里取出下一个号，同时叫号的请求不会拿到同一个患者；更新数据库在锁外执行
+        synchronized (queue) {
+            next = queue.first();
+            if (next == null) {
+                throw new CustomException("-1", "当前没有候诊的患者");
+            }
+            queue.call(next.reserveId);
+            status = queue.snapshot();
+            publish(doctorId, status);
+        }
+        Reserve reserve = new Reserve();
+        reserve.setId(next.reserveId);
+        reserve.setStatus(CallEnum.STATUS_OK.status);
+        try {
+            reserveMapper.updateById(reserve);
+        } catch (RuntimeException e) {
+            // 数据库没有改成功，把这个号放回队列
+            synchronized (queue) {
+                queue.requeue(next.reserveId);
+                publish(doctorId, queue.snapshot());
+            }
+            throw e;
+        }
+        homeService.onReserveStatusChanged(queue.time, CallEnum.STATUS_NO.status, CallEnum.STATUS_OK.status);
+        return status;
+    }
+
+    /**
+     * 查询队列状态，患者查询时同时返回自己的号和前面的人数
+     */
+    public QueueStatus getStatus(Integer doctorId) {
+        DoctorQueue queue = getQueue(doctorId);
+        Account currentUser = TokenUtils.getCurrentUser();
+        synchronized (queue) {
+            QueueStatus status = queue.snapshot();
+            if (RoleEnum.USER.name().equals(currentUser.getRole())) {
+                queue.fillPosition(status, currentUser.getId());
+            }
+            return status;
+        }
+    }
+
+    /**
+     * 订阅医生的队列变化，连接建立后立即推送一次当前状态
+     * 当前状态也交给推送线程发送，不会晚于之后的变化到达
+     */
+    public SseEmitter subscribe(Integer doctorId) {
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT);
+        List<SseEmitter> list = emitters.computeIfAbsent(doctorId, k -> new CopyOnWriteArrayList<>());
+        list.add(emitter);
+        emitter.onCompletion(() -> list.remove(emitter));
+        emitter.onTimeout(() -> list.remove(emitter));
+        emitter.onError(e -> list.remove(emitter));
+        DoctorQueue queue = getQueue(doctorId);
+        synchronized (queue) {
+            publish(doctorId, queue.snapshot());
+        }
+        return emitter;
+    }
+
+    /**
+     * 新增挂号
+     */
+    public void onAdded(Reserve reserve) {
+        afterCommit(reserve, queue -> queue.add(reserve));
+    }
+
+    /**
+     * 删除挂号
+     */
+    public void onRemoved(Reserve reserve) {
+        afterCommit(reserve, queue -> queue.remove(reserve.getId()));
+    }
+
+    /**
+     * 挂号状态变化
+     */
+    public void onStatusChanged(Reserve reserve, String newStatus) {
+        if (CallEnum.STATUS_OK.status.equals(newStatus)) {
+            afterCommit(reserve, queue -> queue.call(reserve.getId()));
+        } else {
+            afterCommit(reserve, queue -> queue.requeue(reserve.getId()));
+        }
+    }
+
+    private Integer resolveDoctorId(Integer doctorId) {
+        Account currentUser = TokenUtils.getCurrentUser();
+        if (RoleEnum.DOCTOR.name().equals(currentUser.getRole())) {
+            return currentUser.getId();
+        }
+        if (!RoleEnum.ADMIN.name().equals(currentUser.getRole())) {
+            throw new CustomException("-1", "您的角色不支持叫号操作");
+        }
+        if (doctorId == null) {
+            throw new CustomException("-1", "请选择医生");
+        }
+        return doctorId;
+    }
+
+    /**
+     * 获取医生当天的队列，隔天第一次访问时重新构建
+     * 先在 compute 外面查库构建好，再放进去，不在 ConcurrentHashMap 的锁里查库；并发构建时保留先放进去的，
+     * 之后的挂号变化都作用在放进去的队列上，不会丢
+     */
+    private DoctorQueue getQueue(Integer doctorId) {
+        LocalDate today = LocalDate.now();
+        DoctorQueue queue = queues.get(doctorId);
+        if (queue != null && queue.time.equals(today)) {
+            return queue;
+        }
+        DoctorQueue loaded = load(doctorId, today);
+        return queues.compute(doctorId, (k, old) -> old != null && old.time.equals(today) ? old : loaded);
+    }
+
+    private DoctorQueue load(Integer doctorId, LocalDate time) {
+        Reserve query = new Reserve();
+        query.setDoctorId(doctorId);
+        query.setTime(time);
+        DoctorQueue queue = new DoctorQueue(doctorId, time);
+        reserveMapper.selectAll(query).forEach(queue::add);
+        return queue;
+    }
+
+    /**
+     * 事务提交后更新队列并推送，只处理当天的挂号
+     */
+    private void afterCommit(Reserve reserve, Consumer<DoctorQueue> action) {
+        Runnable task = () -> {
+            if (!LocalDate.now().equals(reserve.getTime())) {
+                return;
+            }
+            DoctorQueue queue = getQueue(reserve.getDoctorId());
+            synchronized (queue) {
+                action.accept(queue);
+                publish(reserve.getDoctorId(), queue.snapshot());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * 把快照交给推送线程，在队列锁里调用，快照的顺序就是队列变化的顺序
+     * 同一个医生只保留最新的一份快照，浏览器跟不上时跳过中间的状态，不会积压
+     */
+    private void publish(Integer doctorId, QueueStatus status) {
+        Publisher publisher = publishers.computeIfAbsent(doctorId, k -> new Publisher());
+        publisher.latest.set(status);
+        if (publisher.scheduled.compareAndSet(false, true)) {
+            pushExecutor.execute(() -> drain(doctorId, publisher));
+        }
+    }
+
+    /**
+     * 在推送线程上发送最新的快照，同一个医生同时只有一个线程在发送
+     */
+    private void drain(Integer doctorId, Publisher publisher) {
+        while (true) {
+            QueueStatus status = publisher.latest.getAndSet(null);
+            if (status != null) {
+                push(doctorId, status);
+            }
+            publisher.scheduled.set(false);
+            // 发送期间又有新的快照，并且没有被其他线程接手时继续发送
+            if (publisher.latest.get() == null || !publisher.scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void push(Integer doctorId, QueueStatus status) {
+        List<SseEmitter> list = emitters.get(doctorId);
+        if (list == null) {
+            return;
+        }
+        for (SseEmitter emitter : list) {
+            send(list, emitter, status);
+        }
+    }
+
+    private void send(List<SseEmitter> list, SseEmitter emitter, QueueStatus status) {
+        try {
+            emitter.send(SseEmitter.event().name("queue").data(status));
+        } catch (IOException | IllegalStateException e) {
+            // 浏览器已断开
+            list.remove(emitter);
+            log.debug("叫号推送失败，连接已断开: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 单个医生当天的队列，所有方法都需要持有该对象的锁调用
+     */
+    private static class DoctorQueue {
+        private final Integer doctorId;
+        private final LocalDate time;
+        // 挂号ID -> 号，包括已叫号的
+        private final Map<Integer, Entry> entries = new HashMap<>();
+        // 候诊中的号 -> 号，叫号时取最小的；挂号提交的先后和发号顺序不一致时也按号排列
+        private final TreeMap<Integer, Entry> waiting = new TreeMap<>();
+        private Entry current;
+
+        DoctorQueue(Integer doctorId, LocalDate time) {
+            this.doctorId = doctorId;
+            this.time = time;
+        }
+
+        Entry first() {
+            return waiting.isEmpty() ? null : waiting.firstEntry().getValue();
+        }
+
+        void add(Reserve reserve) {
+            if (entries.containsKey(reserve.getId())) {
+                return;
+            }
+            // 升级前没有保存候诊号的挂号按ID排，ID只会越来越大，不会和之后发的号顺序颠倒太多
+            int no = reserve.getQueueNo() == null ? reserve.getId() : reserve.getQueueNo();
+            Entry entry = new Entry(reserve.getId(), reserve.getUserId(), no);
+            entries.put(entry.reserveId, entry);
+            if (CallEnum.STATUS_OK.status.equals(reserve.getStatus())) {
+                if (current == null || current.no < entry.no) {
+                    current = entry;
+                }
+            } else {
+                waiting.put(entry.no, entry);
+            }
+        }
+
+        void remove(Integer reserveId) {
+            Entry entry = entries.remove(reserveId);
+            if (entry != null) {
+                waiting.remove(entry.no);
+            }
+        }
+
+        void call(Integer reserveId) {
+            Entry entry = entries.get(reserveId);
+            if (entry != null && waiting.remove(entry.no) != null) {
+                current = entry;
+            }
+        }
+
+        /**
+         * 已叫号的改回未叫号，按原来的号插回队列
+         */
+        void requeue(Integer reserveId) {
+            Entry entry = entries.get(reserveId);
+            if (entry == null) {
+                return;
+            }
+            waiting.put(entry.no, entry);
+            if (current == entry) {
+                current = null;
+            }
+        }
+
+        QueueStatus snapshot() {
+            QueueStatus status = new QueueStatus();
+            status.setDoctorId(doctorId);
+            status.setTime(time);
+            status.setCurrentNo(current == null ? null : current.no);
+            List<Integer> nos = new ArrayList<>(waiting.size());
+            waiting.values().forEach(e -> nos.add(e.no));
+            status.setWaitingNos(nos);
+            return status;
+        }
+
+        void fillPosition(QueueStatus status, Integer userId) {
+            for (Entry entry : entries.values()) {
+                if (userId.equals(entry.userId)) {
+                    status.setMyNo(entry.no);
+                    int index = status.getWaitingNos().indexOf(entry.no);
+                    status.setAhead(Math.max(index, 0));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 单个医生待发送的最新快照
+     */
+    private static class Publisher {
+        private final AtomicReference<QueueStatus> latest = new AtomicReference<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+
+    private static class Entry {
+        private final Integer reserveId;
+        private final Integer userId;
+        private final int no;
+
+        Entry(Integer reserveId, Integer userId, int no) {
+            this.reserveId = reserveId;
+            this.userId = userId;
+            this.no = no;
+        }
+    }
+}
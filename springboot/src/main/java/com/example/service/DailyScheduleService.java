@@ -0,0 +1,171 @@
+package com.example.service;
+
+import com.example.common.cache.ReferenceDataCache;
+import com.example.entity.Doctor;
+import com.example.entity.Plan;
+import com.example.utils.PageUtils;
+import com.github.pagehelper.PageInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 当天出诊安排业务处理
+ * 每天零点（以及科室、医生、排班有变动时）根据基础数据缓存生成当天的不可变快照：出诊医生、按科室分组、号数和挂号费，
+ * 今日排班和挂号页医生列表直接读快照。读取时发现快照日期不是今天会当场重建，跨天时不会读到前一天的数据
+ **/
+@Service
+public class DailyScheduleService {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyScheduleService.class);
+
+    @Resource
+    private ReferenceDataCache referenceDataCache;
+    @Resource
+    private SlotInventoryService slotInventoryService;
+
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("当天出诊安排生成失败，首次访问时重新生成", e);
+        }
+    }
+
+    /**
+     * 零点切换到新的一天
+     */
+    @Scheduled(cron = "0 0 0 * * ?")
+    public void rollover() {
+        rebuild();
+        log.info("当天出诊安排已切换到 {}（{}），出诊医生 {} 人", snapshot.date, snapshot.week, snapshot.doctors.size());
+    }
+
+    /**
+     * 今天是星期几
+     */
+    public String getWeek() {
+        return current().week;
+    }
+
+    /**
+     * 今日医生排班列表：科室、姓名、职位、挂号费、号数，按科室、医生排序
+     */
+    public List<Map<String, Object>> getSchedule() {
+        return current().schedule;
+    }
+
+    /**
+     * 挂号页面的医生分页查询：只查今天出诊的医生，带剩余号数
+     */
+    public PageInfo<Doctor> selectPage(Doctor filter, Integer pageNum, Integer pageSize) {
+        Snapshot s = current();
+        List<Doctor> candidates = filter.getDepartmentId() == null
+                ? s.doctors : s.byDepartment.getOrDefault(filter.getDepartmentId(), Collections.emptyList());
+        List<Doctor> list = new ArrayList<>();
+        for (Doctor doctor : candidates) {
+            if (ReferenceDataCache.matches(filter, doctor)) {
+                list.add(doctor);
+            }
+        }
+        PageInfo<Doctor> pageInfo = PageUtils.page(list, pageNum, pageSize);
+        // 快照里的对象不能修改，复制后再填剩余号数
+        pageInfo.getList().replaceAll(doctor -> {
+            Doctor copy = new Doctor();
+            BeanUtils.copyProperties(doctor, copy);
+            copy.setNum(slotInventoryService.remaining(doctor.getId(), s.date));
+            return copy;
+        });
+        return pageInfo;
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s == null || !s.date.equals(LocalDate.now()) || s.version != referenceDataCache.version()) {
+            synchronized (this) {
+                s = snapshot;
+                if (s == null || !s.date.equals(LocalDate.now()) || s.version != referenceDataCache.version()) {
+                    rebuild();
+                    s = snapshot;
+                }
+            }
+        }
+        return s;
+    }
+
+    private synchronized void rebuild() {
+        // 先取版本号再读数据，读的过程中基础数据有变动时下次访问会再重建
+        long version = referenceDataCache.version();
+        LocalDate date = LocalDate.now();
+        String week = date.getDayOfWeek().getDisplayName(TextStyle.FULL_STANDALONE, Locale.CHINA);
+
+        Plan planFilter = new Plan();
+        planFilter.setWeek(week);
+        Map<Integer, Integer> capacity = new HashMap<>();
+        for (Plan plan : referenceDataCache.selectPlans(planFilter)) {
+            capacity.put(plan.getDoctorId(), plan.getNum());
+        }
+        Doctor doctorFilter = new Doctor();
+        doctorFilter.setWeek(week);
+        // 按ID排序，和原来的分页顺序一致
+        List<Doctor> doctors = referenceDataCache.selectDoctors(doctorFilter);
+
+        Map<Integer, List<Doctor>> byDepartment = new LinkedHashMap<>();
+        List<Doctor> sorted = new ArrayList<>(doctors);
+        sorted.sort(Comparator.comparing(Doctor::getDepartmentId, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Doctor::getId));
+        List<Map<String, Object>> schedule = new ArrayList<>(sorted.size());
+        for (Doctor doctor : sorted) {
+            byDepartment.computeIfAbsent(doctor.getDepartmentId(), k -> new ArrayList<>()).add(doctor);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("department", doctor.getDepartmentName());
+            row.put("name", doctor.getName());
+            row.put("position", doctor.getPosition());
+            row.put("price", doctor.getPrice());
+            row.put("num", capacity.get(doctor.getId()));
+            schedule.add(Collections.unmodifiableMap(row));
+        }
+        byDepartment.replaceAll((k, v) -> Collections.unmodifiableList(v));
+        snapshot = new Snapshot(date, week, version, Collections.unmodifiableList(doctors),
+                Collections.unmodifiableMap(byDepartment), Collections.unmodifiableList(schedule));
+    }
+
+    private static class Snapshot {
+        private final LocalDate date;
+        private final String week;
+        private final long version;
+        // 当天出诊的医生，按ID排序
+        private final List<Doctor> doctors;
+        // 科室ID -> 当天出诊的医生
+        private final Map<Integer, List<Doctor>> byDepartment;
+        private final List<Map<String, Object>> schedule;
+
+        Snapshot(LocalDate date, String week, long version, List<Doctor> doctors,
+                 Map<Integer, List<Doctor>> byDepartment, List<Map<String, Object>> schedule) {
+            this.date = date;
+            this.week = week;
+            this.version = version;
+            this.doctors = doctors;
+            this.byDepartment = byDepartment;
+            this.schedule = schedule;
+        }
+    }
+}
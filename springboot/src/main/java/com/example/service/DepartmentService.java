@@ -1,13 +1,17 @@
 package com.example.service;
 
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.date.DateUtil;
+import com.example.common.Constants;
+import com.example.common.cache.ReferenceDataCache;
 import com.example.entity.Account;
 import com.example.entity.Department;
 import com.example.mapper.DepartmentMapper;
+import com.example.utils.PageUtils;
 import com.example.utils.TokenUtils;
-import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.List;
@@ -20,12 +24,15 @@ public class DepartmentService {
 
     @Resource
     private DepartmentMapper departmentMapper;
+    @Resource
+    private ReferenceDataCache referenceDataCache;
 
     /**
      * 新增
      */
     public void add(Department department) {
         departmentMapper.insert(department);
+        referenceDataCache.refreshDepartments();
     }
 
     /**
@@ -33,15 +40,18 @@ public class DepartmentService {
      */
     public void deleteById(Integer id) {
         departmentMapper.deleteById(id);
+        referenceDataCache.refreshDepartments();
     }
 
     /**
      * 批量删除
      */
+    @Transactional
     public void deleteBatch(List<Integer> ids) {
-        for (Integer id : ids) {
-            departmentMapper.deleteById(id);
+        for (List<Integer> batch : ListUtil.partition(ids, Constants.DELETE_BATCH_SIZE)) {
+            departmentMapper.deleteByIds(batch);
         }
+        referenceDataCache.refreshDepartments();
     }
 
     /**
@@ -49,29 +59,28 @@ public class DepartmentService {
      */
     public void updateById(Department department) {
         departmentMapper.updateById(department);
+        referenceDataCache.refreshDepartments();
     }
 
     /**
      * 根据ID查询
      */
     public Department selectById(Integer id) {
-        return departmentMapper.selectById(id);
+        return referenceDataCache.getDepartment(id);
     }
 
     /**
      * 查询所有
      */
     public List<Department> selectAll(Department department) {
-        return departmentMapper.selectAll(department);
+        return referenceDataCache.selectDepartments(department);
     }
 
     /**
      * 分页查询
      */
     public PageInfo<Department> selectPage(Department department, Integer pageNum, Integer pageSize) {
-        PageHelper.startPage(pageNum, pageSize);
-        List<Department> list = departmentMapper.selectAll(department);
-        return PageInfo.of(list);
+        return PageUtils.page(referenceDataCache.selectDepartments(department), pageNum, pageSize);
     }
 
 }
\ No newline at end of file
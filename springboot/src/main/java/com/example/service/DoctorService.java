@@ -1,27 +1,24 @@
 package com.example.service;
-import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.json.JSONUtil;
 import com.example.common.Constants;
+import com.example.common.cache.AccountCache;
+import com.example.common.cache.ReferenceDataCache;
+import com.example.common.cache.SingleFlight;
 import com.example.common.enums.ResultCodeEnum;
 import com.example.common.enums.RoleEnum;
 import com.example.entity.*;
 import com.example.exception.CustomException;
-import com.example.mapper.DepartmentMapper;
 import com.example.mapper.DoctorMapper;
-import com.example.mapper.PlanMapper;
-import com.example.mapper.ReserveMapper;
+import com.example.utils.PageUtils;
 import com.example.utils.TokenUtils;
-import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.Resource;
-import java.time.DayOfWeek;
-import java.time.LocalDate;
-import java.time.format.TextStyle;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 /**
  * 医生业务处理
@@ -31,11 +28,15 @@ public class DoctorService {
     @Resource
     private DoctorMapper doctorMapper;
     @Resource
-    private DepartmentMapper departmentMapper;
+    private ReferenceDataCache referenceDataCache;
     @Resource
-    private ReserveMapper reserveMapper;
+    private DailyScheduleService dailyScheduleService;
     @Resource
-    private PlanMapper planMapper;
+    private AccountCache accountCache;
+    @Resource
+    private HomeService homeService;
+    @Resource
+    private SingleFlight singleFlight;
     /**
      * 新增
      */
@@ -52,77 +53,63 @@ public class DoctorService {
         }
         doctor.setRole(RoleEnum.DOCTOR.name());
         doctorMapper.insert(doctor);
+        homeService.onAccountAdded(RoleEnum.DOCTOR);
+        referenceDataCache.refreshDoctors();
     }
     /**
      * 删除
      */
     public void deleteById(Integer id) {
-        doctorMapper.deleteById(id);
+        homeService.onAccountDeleted(RoleEnum.DOCTOR, doctorMapper.deleteById(id));
+        accountCache.invalidate(RoleEnum.DOCTOR.name(), id);
+        referenceDataCache.refreshDoctors();
     }
     /**
      * 批量删除
      */
+    @Transactional
     public void deleteBatch(List<Integer> ids) {
+        for (List<Integer> batch : ListUtil.partition(ids, Constants.DELETE_BATCH_SIZE)) {
+            homeService.onAccountDeleted(RoleEnum.DOCTOR, doctorMapper.deleteByIds(batch));
+        }
         for (Integer id : ids) {
-            doctorMapper.deleteById(id);
+            accountCache.invalidate(RoleEnum.DOCTOR.name(), id);
         }
+        referenceDataCache.refreshDoctors();
     }
     /**
      * 修改
      */
     public void updateById(Doctor doctor) {
         doctorMapper.updateById(doctor);
+        accountCache.invalidate(RoleEnum.DOCTOR.name(), doctor.getId());
+        referenceDataCache.refreshDoctors();
     }
     /**
      * 根据ID查询
      */
     public Doctor selectById(Integer id) {
-        return doctorMapper.selectById(id);
+        return referenceDataCache.getDoctor(id);
     }
     /**
      * 查询所有
      */
     public List<Doctor> selectAll(Doctor doctor) {
-        return doctorMapper.selectAll(doctor);
+        return referenceDataCache.selectDoctors(doctor);
     }
     /**
      * 分页查询
      */
     public PageInfo<Doctor> selectPage(Doctor doctor, Integer pageNum, Integer pageSize) {
-        PageHelper.startPage(pageNum, pageSize);
-        List<Doctor> list = doctorMapper.selectAll(doctor);
-        return PageInfo.of(list);
+        return PageUtils.page(referenceDataCache.selectDoctors(doctor), pageNum, pageSize);
     }
     /**
      * 医生挂号页面的分页查询
      */
     public PageInfo<Doctor> selectPage2(Doctor doctor, Integer pageNum, Integer pageSize) {
-        String today = DateUtil.format(new Date(), "yyyy-MM-dd");
-        // 查询在诊医生的时候，除了根据科室，还得根据当天是星期几，筛选出当天在诊的医生
-        String week = getTodayWeek();
-        doctor.setWeek(week);
-        PageHelper.startPage(pageNum, pageSize);
-        List<Doctor> list = doctorMapper.selectAll(doctor);
-        // 计算查出来的在诊医生剩余多少个号
-        for (Doctor dbDoctor : list) {
-            // 查询出来当天已经挂过该医生号的数量
-            Reserve reserve = new Reserve();
-            reserve.setDoctorId(dbDoctor.getId());
-            reserve.setTime(today);
-            List<Reserve> reserves = reserveMapper.selectAll(reserve);
-            Plan plan = planMapper.selectByDoctorIdAndWeek(dbDoctor.getId(), week);
-            // 用总数量-已经挂过的号数量 = 剩余挂号数量
-            dbDoctor.setNum(plan.getNum() - reserves.size());
-        }
-        return PageInfo.of(list);
-    }
-    /**
-     * 获取今天是星期几
-     */
-    private String getTodayWeek() {
-        LocalDate today = LocalDate.now();
-        DayOfWeek dayOfWeek = today.getDayOfWeek();
-        return dayOfWeek.getDisplayName(TextStyle.FULL_STANDALONE, Locale.CHINA);
+        // 只查当天出诊的医生，从当天出诊安排快照里取；同时进来的相同查询只执行一次
+        String key = "doctor.selectPage2" + JSONUtil.toJsonStr(doctor) + pageNum + "-" + pageSize;
+        return singleFlight.execute(key, () -> dailyScheduleService.selectPage(doctor, pageNum, pageSize));
     }
     /**
      * 登录
@@ -140,7 +127,7 @@ public class DoctorService {
         String token = TokenUtils.createToken(tokenData, dbDoctor.getPassword());
         dbDoctor.setToken(token);
         if (ObjectUtil.isNotEmpty(dbDoctor.getDepartmentId())) {
-            Department department = departmentMapper.selectById(dbDoctor.getDepartmentId());
+            Department department = referenceDataCache.getDepartment(dbDoctor.getDepartmentId());
             if (ObjectUtil.isNotEmpty(department)) {
                 dbDoctor.setDepartmentName(department.getName());
             }
@@ -160,14 +147,14 @@ public class DoctorService {
         }
         dbDoctor.setPassword(account.getNewPassword());
         doctorMapper.updateById(dbDoctor);
+        accountCache.invalidate(RoleEnum.DOCTOR.name(), dbDoctor.getId());
+        referenceDataCache.refreshDoctors();
     }
 
     /**
      * 获取今日医生排班列表
      */
     public List<Map<String, Object>> getTodaySchedule() {
-        // 复用原有代码的「获取今日星期几」逻辑
-        String todayWeek = getTodayWeek();
-        return doctorMapper.selectTodaySchedule(todayWeek);
+        return dailyScheduleService.getSchedule();
     }
 }
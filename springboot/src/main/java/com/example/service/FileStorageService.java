@@ -0,0 +1,291 @@
+package com.example.service;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.HexUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件存储业务处理
+ * 文件按内容的 SHA-256 只存一份，放在 file-store/blobs/ab/cd/哈希值 的分层目录下；
+ * file-store/index 记录对外的 时间戳-文件名 和内容哈希的对应关系。存储目录不在对外的 files 目录下，
+ * 不能通过 /files/** 访问或删除；旧的平铺文件没有索引时按 files 下的原路径读取
+ **/
+@Service
+public class FileStorageService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileStorageService.class);
+
+    // 索引文件中表示已删除的哈希值
+    private static final String DELETED = "-";
+
+    // 旧的平铺文件目录，对外的文件名都相对于这里
+    private final Path root = Paths.get(System.getProperty("user.dir"), "files");
+    // 内容存储目录，和 files 平级
+    private final Path storeDir = Paths.get(System.getProperty("user.dir"), "file-store");
+    private final Path blobDir = storeDir.resolve("blobs");
+    private final Path tmpDir = storeDir.resolve(".tmp");
+    private final Path indexFile = storeDir.resolve("index");
+    // 旧文件全部迁移完成后写入，之后启动不再扫描 files 目录
+    private final Path migratedMarker = storeDir.resolve("legacy-migrated");
+
+    private final AtomicLong lastFlag = new AtomicLong();
+
+    // 文件名 -> 内容哈希
+    private final ConcurrentHashMap<String, String> index = new ConcurrentHashMap<>();
+    // 内容哈希 -> 引用次数，只在持有 this 锁时修改
+    private final Map<String, Integer> refCounts = new HashMap<>();
+
+    private BufferedWriter indexWriter;
+
+    // 启动时把 files 下平铺的旧文件迁移到内容存储，全部完成后只执行一次
+    @Value("${file-storage.migrate-legacy:true}")
+    private boolean migrateLegacy;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(blobDir);
+        Files.createDirectories(tmpDir);
+        loadIndex();
+        if (migrateLegacy && !Files.exists(migratedMarker)) {
+            Thread thread = new Thread(this::migrateLegacyFiles, "file-storage-migrate");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * 保存上传的文件，返回 时间戳-文件名
+     * 边写临时文件边计算哈希，不把文件读进内存；内容已存在时只增加一条索引
+     */
+    public String store(MultipartFile file) throws IOException {
+        // 文件名里的换行和制表符会破坏索引文件格式，替换掉
+        String name = nextFlag() + "-" + FileUtil.getName(file.getOriginalFilename()).replaceAll("[\\t\\r\\n]", "_");
+        Path tmp = tmpDir.resolve(name + ".part");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+                 OutputStream out = Files.newOutputStream(tmp)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            commit(name, HexUtil.encodeHexStr(digest.digest()), tmp);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return name;
+    }
+
+    /**
+     * 根据 时间戳-文件名 找到磁盘上的文件，找不到返回null
+     */
+    public File resolve(String name) {
+        String hash = index.get(name);
+        if (hash != null) {
+            return blobPath(hash).toFile();
+        }
+        // 没有索引的旧文件还在 files 目录下平铺存放
+        Path file = legacyFile(name);
+        return file == null ? null : file.toFile();
+    }
+
+    /**
+     * 删除文件，内容没有其他文件名引用时才真正删除
+     */
+    public synchronized void delete(String name) throws IOException {
+        String hash = index.remove(name);
+        if (hash == null) {
+            // 只删除 files 目录下直接存放的普通文件，目录和其他路径一律忽略
+            Path file = legacyFile(name);
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+            return;
+        }
+        appendIndex(name, DELETED);
+        int count = refCounts.merge(hash, -1, Integer::sum);
+        if (count <= 0) {
+            refCounts.remove(hash);
+            Files.deleteIfExists(blobPath(hash));
+        }
+    }
+
+    /**
+     * 生成文件名的时间戳前缀，同一毫秒内的并发上传依次顺延1毫秒，不加锁也不会重名
+     */
+    private String nextFlag() {
+        return String.valueOf(lastFlag.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis())));
+    }
+
+    /**
+     * 把临时文件放到内容对应的位置并记录索引；同样的内容已经存在时直接丢弃临时文件
+     */
+    private synchronized void commit(String name, String hash, Path tmp) throws IOException {
+        Path blob = blobPath(hash);
+        if (!Files.exists(blob)) {
+            Files.createDirectories(blob.getParent());
+            Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+        }
+        appendIndex(name, hash);
+        index.put(name, hash);
+        refCounts.merge(hash, 1, Integer::sum);
+    }
+
+    /**
+     * 旧的平铺文件：只能是 files 目录下直接存放的普通文件，不允许带路径、以点开头或指向目录，否则返回null
+     */
+    private Path legacyFile(String name) {
+        if (name == null || name.isEmpty() || name.startsWith(".")
+                || name.contains("/") || name.contains("\\") || name.contains("\0")) {
+            return null;
+        }
+        Path file = root.resolve(name).normalize();
+        if (!root.equals(file.getParent()) || !Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+            return null;
+        }
+        return file;
+    }
+
+    private Path blobPath(String hash) {
+        return blobDir.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    /**
+     * 加载索引，同时把索引文件压缩成只包含有效记录
+     */
+    private synchronized void loadIndex() throws IOException {
+        if (Files.exists(indexFile)) {
+            List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                int i = line.lastIndexOf('\t');
+                if (i <= 0) {
+                    continue;
+                }
+                String name = line.substring(0, i);
+                String hash = line.substring(i + 1);
+                if (DELETED.equals(hash)) {
+                    index.remove(name);
+                } else {
+                    index.put(name, hash);
+                }
+            }
+        }
+        index.values().forEach(hash -> refCounts.merge(hash, 1, Integer::sum));
+        Path compacted = tmpDir.resolve("index.compact");
+        try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : index.entrySet()) {
+                writer.write(entry.getKey() + "\t" + entry.getValue());
+                writer.newLine();
+            }
+        }
+        Files.move(compacted, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexWriter = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    private void appendIndex(String name, String hash) throws IOException {
+        indexWriter.write(name + "\t" + hash);
+        indexWriter.newLine();
+        indexWriter.flush();
+    }
+
+    /**
+     * 把 files 目录下平铺的旧文件搬进内容存储，相同内容只保留一份，原来的链接通过索引继续可用
+     * 每个文件先复制并计算哈希，索引写入后才删除原文件，中途停止时下次启动从头再扫一遍：
+     * 已有索引的只删除还留着的原文件，没有索引的重新迁移。全部成功后写入标记文件，以后不再执行
+     */
+    private void migrateLegacyFiles() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        int migrated = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root, Files::isRegularFile)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (legacyFile(name) == null) {
+                    continue;
+                }
+                if (index.containsKey(name)) {
+                    removeMigrated(name, file);
+                    continue;
+                }
+                Path tmp = tmpDir.resolve(name + ".part");
+                try {
+                    MessageDigest digest = sha256();
+                    try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+                        Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    if (commitLegacy(name, HexUtil.encodeHexStr(digest.digest()), tmp, file)) {
+                        migrated++;
+                    }
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+            Files.createFile(migratedMarker);
+        } catch (Exception e) {
+            log.error("旧文件迁移失败，下次启动时继续", e);
+        }
+        if (migrated > 0) {
+            log.info("旧文件迁移完成，共{}个", migrated);
+        }
+    }
+
+    /**
+     * 迁移期间原文件可能已经被删除，和 delete 持有同一把锁，确认原文件还在才写索引，避免把删掉的文件恢复出来
+     */
+    private synchronized boolean commitLegacy(String name, String hash, Path tmp, Path file) throws IOException {
+        if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS) || index.containsKey(name)) {
+            return false;
+        }
+        commit(name, hash, tmp);
+        Files.delete(file);
+        return true;
+    }
+
+    /**
+     * 上次迁移写完索引后没来得及删除原文件，确认内容已经在存储里再删除
+     */
+    private synchronized void removeMigrated(String name, Path file) throws IOException {
+        String hash = index.get(name);
+        if (hash != null && Files.exists(blobPath(hash))) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,39 +1,286 @@
 package com.example.service;
 
+import com.example.common.cache.SingleFlight;
+import com.example.common.enums.CallEnum;
+import com.example.common.enums.RoleEnum;
+import com.example.entity.RegisterCount;
 import com.example.entity.Statistics;
 import com.example.mapper.HomeMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 首页统计服务层
+ * 统计数据启动时从数据库加载一次，之后由挂号、叫号、账号增删等操作增量维护，定时和数据库对账纠正偏差。
+ * 每次增量都带一个递增的序号，对账期间的增量另外记一份；对账用数据库的值生成新的计数，
+ * 只重放每项统计查完以后才到的增量，再整体替换，查库前已经提交的不会重复计算，查库期间到的也不会丢
  */
 @Service
 public class HomeService {
 
+    private static final Logger log = LoggerFactory.getLogger(HomeService.class);
+
+    @Value("${booking.horizon-days:7}")
+    private int horizonDays;
+
     @Resource
     private HomeMapper homeMapper;
+    @Resource
+    private SingleFlight singleFlight;
+
+    // 增量、对账替换计数时都持有这个锁
+    private final Object lock = new Object();
+    private volatile Counters counters = new Counters();
+    // 是否已经和数据库对过账
+    private volatile boolean loaded;
+    // 以下字段只在持有 lock 时访问：最后一次增量的序号，对账期间收到的增量
+    private long sequence;
+    private List<Event> pending;
+
+    @PostConstruct
+    public void init() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("首页统计数据初始化失败，首次访问时重新加载", e);
+        }
+    }
 
     /**
      * 获取所有统计数据
      * @return 统计结果
      */
     public Statistics getStatistics() {
+        // 管理员首页同时打开很多个时只计算一次
+        return singleFlight.execute("home.statistics", this::buildStatistics);
+    }
+
+    private Statistics buildStatistics() {
+        if (!loaded) {
+            reconcile();
+        }
+        Counters c = counters;
+        LocalDate today = LocalDate.now();
+        DayCount todayCount = c.day(today);
         Statistics s = new Statistics();
         // 今日挂号总量
-        s.setTodayRegister(homeMapper.getTodayRegister());
+        s.setTodayRegister(todayCount.total.get());
         // 今日已叫号人数
-        s.setTodayCalled(homeMapper.getTodayCalled());
+        s.setTodayCalled(todayCount.called.get());
         // 今日未叫号人数
-        s.setTodayUnCalled(homeMapper.getTodayUnCalled());
+        s.setTodayUnCalled(todayCount.total.get() - todayCount.called.get());
         // 医生总数
-        s.setDoctorCount(homeMapper.getDoctorCount());
+        s.setDoctorCount(c.doctorCount.get());
         // 患者总数
-        s.setPatientCount(homeMapper.getPatientCount());
+        s.setPatientCount(c.patientCount.get());
         // 管理员总数
-        s.setAdminCount(homeMapper.getAdminCount());
+        s.setAdminCount(c.adminCount.get());
         // 近7天挂号量
-        s.setWeekList(homeMapper.getWeekRegister());
+        List<Integer> weekList = new ArrayList<>();
+        for (int i = 6; i >= 0; i--) {
+            weekList.add(c.day(today.minusDays(i)).total.get());
+        }
+        s.setWeekList(weekList);
         return s;
     }
+
+    /**
+     * 定时从数据库重新加载统计数据，纠正增量维护产生的偏差
+     */
+    @Scheduled(initialDelayString = "${statistics.reconcile-interval-ms:300000}", fixedDelayString = "${statistics.reconcile-interval-ms:300000}")
+    public synchronized void reconcile() {
+        LocalDate today = LocalDate.now();
+        synchronized (lock) {
+            pending = new ArrayList<>();
+        }
+        try {
+            Counters c = new Counters();
+            // 每项统计查完后记下当时的序号，序号更大的增量查库时还没有算进去
+            long[] readAt = new long[Kind.values().length];
+            c.doctorCount.set(homeMapper.getDoctorCount());
+            readAt[Kind.DOCTOR.ordinal()] = currentSequence();
+            c.patientCount.set(homeMapper.getPatientCount());
+            readAt[Kind.PATIENT.ordinal()] = currentSequence();
+            c.adminCount.set(homeMapper.getAdminCount());
+            readAt[Kind.ADMIN.ordinal()] = currentSequence();
+            // 日期由应用传入，不依赖数据库的日期函数和时区；提前预约的号也一起加载，到那天时计数已经是准的
+            for (RegisterCount count : homeMapper.getRegisterCountByDay(today.minusDays(6), today.plusDays(horizonDays - 1))) {
+                c.day(count.getTime()).total.set(count.getTotal());
+            }
+            readAt[Kind.TOTAL.ordinal()] = currentSequence();
+            c.day(today).called.set(homeMapper.getTodayCalled(today));
+            readAt[Kind.CALLED.ordinal()] = currentSequence();
+            synchronized (lock) {
+                for (Event event : pending) {
+                    if (event.seq > readAt[event.kind.ordinal()]) {
+                        event.apply(c);
+                    }
+                }
+                counters = c;
+                loaded = true;
+            }
+        } finally {
+            synchronized (lock) {
+                pending = null;
+            }
+        }
+    }
+
+    /**
+     * 新增挂号
+     */
+    public void onReserveAdded(LocalDate time) {
+        afterCommit(new Event(Kind.TOTAL, time, 1));
+    }
+
+    /**
+     * 删除挂号
+     */
+    public void onReserveDeleted(LocalDate time, String status) {
+        afterCommit(new Event(Kind.TOTAL, time, -1));
+        if (CallEnum.STATUS_OK.status.equals(status)) {
+            afterCommit(new Event(Kind.CALLED, time, -1));
+        }
+    }
+
+    /**
+     * 挂号状态变化（叫号）
+     */
+    public void onReserveStatusChanged(LocalDate time, String oldStatus, String newStatus) {
+        boolean wasCalled = CallEnum.STATUS_OK.status.equals(oldStatus);
+        boolean isCalled = CallEnum.STATUS_OK.status.equals(newStatus);
+        if (wasCalled == isCalled) {
+            return;
+        }
+        afterCommit(new Event(Kind.CALLED, time, isCalled ? 1 : -1));
+    }
+
+    /**
+     * 新增账号
+     */
+    public void onAccountAdded(RoleEnum role) {
+        afterCommit(new Event(Kind.of(role), null, 1));
+    }
+
+    /**
+     * 删除账号
+     */
+    public void onAccountDeleted(RoleEnum role, int num) {
+        if (num > 0) {
+            afterCommit(new Event(Kind.of(role), null, -num));
+        }
+    }
+
+    private long currentSequence() {
+        synchronized (lock) {
+            return sequence;
+        }
+    }
+
+    /**
+     * 更新当前计数，对账期间同时记下来，替换计数时重放
+     */
+    private void record(Event event) {
+        synchronized (lock) {
+            event.seq = ++sequence;
+            event.apply(counters);
+            if (pending != null) {
+                pending.add(event);
+            }
+        }
+    }
+
+    /**
+     * 在事务中时等事务提交后再更新计数，避免回滚后计数不准
+     */
+    private void afterCommit(Event event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(event);
+                }
+            });
+        } else {
+            record(event);
+        }
+    }
+
+    private static class Counters {
+        private final AtomicInteger doctorCount = new AtomicInteger();
+        private final AtomicInteger patientCount = new AtomicInteger();
+        private final AtomicInteger adminCount = new AtomicInteger();
+        private final ConcurrentHashMap<LocalDate, DayCount> days = new ConcurrentHashMap<>();
+
+        DayCount day(LocalDate time) {
+            return days.computeIfAbsent(time, k -> new DayCount());
+        }
+    }
+
+    /**
+     * 增量对应的统计项，每项由一条对账查询加载
+     */
+    private enum Kind {
+        DOCTOR, PATIENT, ADMIN, TOTAL, CALLED;
+
+        static Kind of(RoleEnum role) {
+            if (RoleEnum.ADMIN == role) {
+                return ADMIN;
+            }
+            if (RoleEnum.DOCTOR == role) {
+                return DOCTOR;
+            }
+            return PATIENT;
+        }
+    }
+
+    private static class Event {
+        private final Kind kind;
+        private final LocalDate time;
+        private final int delta;
+        private long seq;
+
+        Event(Kind kind, LocalDate time, int delta) {
+            this.kind = kind;
+            this.time = time;
+            this.delta = delta;
+        }
+
+        void apply(Counters c) {
+            switch (kind) {
+                case DOCTOR:
+                    c.doctorCount.addAndGet(delta);
+                    break;
+                case PATIENT:
+                    c.patientCount.addAndGet(delta);
+                    break;
+                case ADMIN:
+                    c.adminCount.addAndGet(delta);
+                    break;
+                case TOTAL:
+                    c.day(time).total.addAndGet(delta);
+                    break;
+                default:
+                    c.day(time).called.addAndGet(delta);
+            }
+        }
+    }
+
+    private static class DayCount {
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger called = new AtomicInteger();
+    }
 }
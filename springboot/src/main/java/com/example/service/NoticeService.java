@@ -1,6 +1,9 @@
 package com.example.service;
 
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.date.DateUtil;
+import com.example.common.Constants;
+import com.example.common.cache.CountCache;
 import com.example.entity.Account;
 import com.example.entity.Notice;
 import com.example.mapper.NoticeMapper;
@@ -9,6 +12,7 @@ import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import javax.annotation.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
 /**
@@ -19,6 +23,8 @@ public class NoticeService {
 
     @Resource
     private NoticeMapper noticeMapper;
+    @Resource
+    private CountCache countCache;
 
     /**
      * 新增
@@ -40,9 +46,10 @@ public class NoticeService {
     /**
      * 批量删除
      */
+    @Transactional
     public void deleteBatch(List<Integer> ids) {
-        for (Integer id : ids) {
-            noticeMapper.deleteById(id);
+        for (List<Integer> batch : ListUtil.partition(ids, Constants.DELETE_BATCH_SIZE)) {
+            noticeMapper.deleteByIds(batch);
         }
     }
 
@@ -71,9 +78,13 @@ public class NoticeService {
      * 分页查询
      */
     public PageInfo<Notice> selectPage(Notice notice, Integer pageNum, Integer pageSize) {
-        PageHelper.startPage(pageNum, pageSize);
-        List<Notice> list = noticeMapper.selectAll(notice);
-        return PageInfo.of(list);
+        if (notice.getAfterId() != null) {
+            // 游标翻页：从 afterId 往后取一页，不统计总数，翻得再深也只扫描一页数据
+            PageHelper.startPage(1, pageSize, false);
+            List<Notice> list = noticeMapper.selectAll(notice);
+            return PageInfo.of(list);
+        }
+        return countCache.selectPage(notice, pageNum, pageSize, () -> noticeMapper.selectAll(notice), "notice");
     }
 
 }
\ No newline at end of file
@@ -1,17 +1,21 @@
 package com.example.service;
 
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.util.ObjectUtil;
+import com.example.common.Constants;
+import com.example.common.cache.ReferenceDataCache;
 import com.example.common.enums.ResultCodeEnum;
 import com.example.common.enums.RoleEnum;
 import com.example.entity.Account;
 import com.example.entity.Plan;
 import com.example.exception.CustomException;
 import com.example.mapper.PlanMapper;
+import com.example.utils.PageUtils;
 import com.example.utils.TokenUtils;
-import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.List;
@@ -24,10 +28,15 @@ public class PlanService {
 
     @Resource
     private PlanMapper planMapper;
+    @Resource
+    private ReferenceDataCache referenceDataCache;
+    @Resource
+    private SlotInventoryService slotInventoryService;
 
     /**
      * 新增
      */
+    @Transactional
     public void add(Plan plan) {
         // 要先做一次这个排班的校验：同一个医生同一天只能有一条排班记录
         // 根据医生的id和星期几查询一下有么有该记录
@@ -36,47 +45,72 @@ public class PlanService {
             throw new CustomException(ResultCodeEnum.PLAN_EXIST_ERROR);
         }
         planMapper.insert(plan);
+        slotInventoryService.onPlanChanged(plan.getDoctorId(), plan.getWeek(), num(plan));
+        referenceDataCache.refreshPlans();
     }
 
     /**
      * 删除
      */
+    @Transactional
     public void deleteById(Integer id) {
+        Plan dbPlan = referenceDataCache.getPlan(id);
         planMapper.deleteById(id);
+        if (dbPlan != null) {
+            slotInventoryService.onPlanChanged(dbPlan.getDoctorId(), dbPlan.getWeek(), 0);
+        }
+        referenceDataCache.refreshPlans();
     }
 
     /**
      * 批量删除
      */
+    @Transactional
     public void deleteBatch(List<Integer> ids) {
+        for (List<Integer> batch : ListUtil.partition(ids, Constants.DELETE_BATCH_SIZE)) {
+            planMapper.deleteByIds(batch);
+        }
         for (Integer id : ids) {
-            planMapper.deleteById(id);
+            Plan dbPlan = referenceDataCache.getPlan(id);
+            if (dbPlan != null) {
+                slotInventoryService.onPlanChanged(dbPlan.getDoctorId(), dbPlan.getWeek(), 0);
+            }
         }
+        referenceDataCache.refreshPlans();
     }
 
     /**
      * 修改
      */
+    @Transactional
     public void updateById(Plan plan) {
         Plan dbPlan = planMapper.selectByDoctorIdAndWeek(plan.getDoctorId(), plan.getWeek());
         if (ObjectUtil.isNotEmpty(dbPlan) && !plan.getId().equals(dbPlan.getId())) {
             throw new CustomException(ResultCodeEnum.PLAN_EXIST_ERROR);
         }
+        Plan oldPlan = planMapper.selectById(plan.getId());
         planMapper.updateById(plan);
+        Plan newPlan = planMapper.selectById(plan.getId());
+        // 换了医生或星期几时，原来那天的号数清零
+        if (oldPlan != null && (!oldPlan.getDoctorId().equals(newPlan.getDoctorId()) || !oldPlan.getWeek().equals(newPlan.getWeek()))) {
+            slotInventoryService.onPlanChanged(oldPlan.getDoctorId(), oldPlan.getWeek(), 0);
+        }
+        slotInventoryService.onPlanChanged(newPlan.getDoctorId(), newPlan.getWeek(), num(newPlan));
+        referenceDataCache.refreshPlans();
     }
 
     /**
      * 根据ID查询
      */
     public Plan selectById(Integer id) {
-        return planMapper.selectById(id);
+        return referenceDataCache.getPlan(id);
     }
 
     /**
      * 查询所有
      */
     public List<Plan> selectAll(Plan plan) {
-        return planMapper.selectAll(plan);
+        return referenceDataCache.selectPlans(plan);
     }
 
     /**
@@ -87,9 +121,10 @@ public class PlanService {
         if (RoleEnum.DOCTOR.name().equals(currentUser.getRole())) {
             plan.setDoctorId(currentUser.getId());
         }
-        PageHelper.startPage(pageNum, pageSize);
-        List<Plan> list = planMapper.selectAll(plan);
-        return PageInfo.of(list);
+        return PageUtils.page(referenceDataCache.selectPlans(plan), pageNum, pageSize);
     }
 
-}
\ No newline at end of file
+    private static int num(Plan plan) {
+        return plan.getNum() == null ? 0 : plan.getNum();
+    }
+}
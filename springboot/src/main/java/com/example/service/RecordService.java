@@ -1,7 +1,9 @@
 package com.example.service;
 
 import cn.hutool.core.collection.CollectionUtil;
-import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.collection.ListUtil;
+import com.example.common.Constants;
+import com.example.common.cache.CountCache;
 import com.example.common.enums.RoleEnum;
 import com.example.common.enums.StatusEnum;
 import com.example.entity.Account;
@@ -11,9 +13,10 @@ import com.example.utils.TokenUtils;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
-import java.util.Date;
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -24,14 +27,15 @@ public class RecordService {
 
     @Resource
     private RecordMapper recordMapper;
+    @Resource
+    private CountCache countCache;
 
     /**
      * 新增
      */
     public void add(Record record) {
         // 先去查看一下该患者、该医生在当天是否已经有了就诊记录
-        String time = DateUtil.format(new Date(), "yyyy-MM-dd");
-        record.setTime(time);
+        record.setTime(LocalDate.now());
         List<Record> records = recordMapper.selectAll(record);
         if (CollectionUtil.isEmpty(records)) {
             record.setInhostpitalRecord(StatusEnum.NO.status);
@@ -49,9 +53,10 @@ public class RecordService {
     /**
      * 批量删除
      */
+    @Transactional
     public void deleteBatch(List<Integer> ids) {
-        for (Integer id : ids) {
-            recordMapper.deleteById(id);
+        for (List<Integer> batch : ListUtil.partition(ids, Constants.DELETE_BATCH_SIZE)) {
+            recordMapper.deleteByIds(batch);
         }
     }
 
@@ -87,9 +92,13 @@ public class RecordService {
         if (RoleEnum.DOCTOR.name().equals(currentUser.getRole())) {
             record.setDoctorId(currentUser.getId());
         }
-        PageHelper.startPage(pageNum, pageSize);
-        List<Record> list = recordMapper.selectAll(record);
-        return PageInfo.of(list);
+        if (record.getAfterId() != null) {
+            // 游标翻页：从 afterId 往后取一页，不统计总数，翻得再深也只扫描一页数据
+            PageHelper.startPage(1, pageSize, false);
+            List<Record> list = recordMapper.selectAll(record);
+            return PageInfo.of(list);
+        }
+        return countCache.selectPage(record, pageNum, pageSize, () -> recordMapper.selectAll(record), "record", "user");
     }
 
 }
\ No newline at end of file
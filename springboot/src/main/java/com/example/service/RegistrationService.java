@@ -1,7 +1,10 @@
 package com.example.service;
 
 import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.date.DateUtil;
+import com.example.common.Constants;
+import com.example.common.cache.CountCache;
 import com.example.common.enums.RoleEnum;
 import com.example.entity.Account;
 import com.example.entity.Registration;
@@ -10,6 +13,7 @@ import com.example.utils.TokenUtils;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.List;
@@ -22,6 +26,8 @@ public class RegistrationService {
 
     @Resource
     private RegistrationMapper registrationMapper;
+    @Resource
+    private CountCache countCache;
 
     /**
      * 新增
@@ -44,9 +50,10 @@ public class RegistrationService {
     /**
      * 批量删除
      */
+    @Transactional
     public void deleteBatch(List<Integer> ids) {
-        for (Integer id : ids) {
-            registrationMapper.deleteById(id);
+        for (List<Integer> batch : ListUtil.partition(ids, Constants.DELETE_BATCH_SIZE)) {
+            registrationMapper.deleteByIds(batch);
         }
     }
 
@@ -79,9 +86,13 @@ public class RegistrationService {
         if (RoleEnum.USER.name().equals(currentUser.getRole())) {
             registration.setUserId(currentUser.getId());
         }
-        PageHelper.startPage(pageNum, pageSize);
-        List<Registration> list = registrationMapper.selectAll(registration);
-        return PageInfo.of(list);
+        if (registration.getAfterId() != null) {
+            // 游标翻页：从 afterId 往后取一页，不统计总数，翻得再深也只扫描一页数据
+            PageHelper.startPage(1, pageSize, false);
+            List<Registration> list = registrationMapper.selectAll(registration);
+            return PageInfo.of(list);
+        }
+        return countCache.selectPage(registration, pageNum, pageSize, () -> registrationMapper.selectAll(registration), "registration");
     }
 
 }
\ No newline at end of file
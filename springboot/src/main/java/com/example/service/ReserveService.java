@@ -1,26 +1,36 @@
 package com.example.service;
 
 import cn.hutool.core.collection.CollectionUtil;
-import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.map.TolerantMap;
+import com.example.common.Constants;
+import com.example.common.cache.CountCache;
+import com.example.common.cache.ReferenceDataCache;
 import com.example.common.enums.CallEnum;
 import com.example.common.enums.RoleEnum;
 import com.example.entity.Account;
+import com.example.entity.Availability;
 import com.example.entity.Doctor;
+import com.example.entity.DoctorCalendar;
 import com.example.entity.Reserve;
-import com.example.entity.User;
 import com.example.exception.CustomException;
-import com.example.mapper.DoctorMapper;
 import com.example.mapper.ReserveMapper;
+import com.example.mapper.ReserveSlotMapper;
 import com.example.mapper.UserMapper;
 import com.example.utils.TokenUtils;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
-import java.util.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * 预约挂号表业务处理
@@ -31,52 +41,117 @@ public class ReserveService {
     @Resource
     private ReserveMapper reserveMapper;
     @Resource
+    private CountCache countCache;
+    @Resource
     private UserMapper userMapper;
     @Resource
-    private DoctorMapper doctorMapper;
+    private ReserveSlotMapper reserveSlotMapper;
+    @Resource
+    private ReferenceDataCache referenceDataCache;
+    @Resource
+    private SlotInventoryService slotInventoryService;
+    @Resource
+    private HomeService homeService;
+    @Resource
+    private CallQueueService callQueueService;
 
     /**
-     * 新增
+     * 新增，不传日期时挂今天的号，可以提前预约 booking.horizon-days 天内的号
+     * requestKey 为客户端的幂等key，和挂号记录一起保存，重试时用 selectByRequestKey 查到原来的挂号
      */
-    public void add(Reserve reserve) {
-        reserve.setTime(DateUtil.format(new Date(), "yyyy-MM-dd"));
-        // 判断一下该用户当天有没有对该医生挂过号
-        List<Reserve> reserves = reserveMapper.selectAll(reserve);
-        if (CollectionUtil.isNotEmpty(reserves)) {
-            throw new CustomException("-1", "您今天已经挂号该医生的号了，请勿重复挂号");
+    @Transactional
+    public Reserve add(Reserve reserve, String requestKey) {
+        if (reserve.getTime() == null) {
+            reserve.setTime(LocalDate.now());
         }
-        // 判断一下余额够不够
-        User user = userMapper.selectById(reserve.getUserId());
-        Doctor doctor = doctorMapper.selectById(reserve.getDoctorId());
-        if (user.getAccount() < doctor.getPrice()) {
+        reserve.setStatus(CallEnum.STATUS_NO.status);
+        Doctor doctor = referenceDataCache.getDoctor(reserve.getDoctorId());
+        // 先在内存号源里占号，号已挂满直接拒绝；事务回滚时号会自动退回
+        slotInventoryService.acquire(reserve.getDoctorId(), reserve.getTime());
+        // 加锁顺序固定为 挂号记录 -> 剩余号数 -> 患者余额，和取消挂号一致，避免互相死锁
+        try {
+            reserveMapper.insertWithRequestKey(reserve, requestKey);
+        } catch (DuplicateKeyException e) {
+            // 同一患者这一天已经挂过该医生的号，由唯一索引拦下
+            throw new CustomException("-1", "您已经挂过该医生这一天的号了，请勿重复挂号");
+        }
+        // 数据库里按 医生+日期 条件扣减剩余号数，兜底防止超挂；这一行由 SlotInventoryService 提前生成
+        if (reserveSlotMapper.decrement(reserve.getDoctorId(), reserve.getTime()) == 0) {
+            if (reserveSlotMapper.selectRemaining(reserve.getDoctorId(), reserve.getTime()) == null) {
+                throw new CustomException("-1", "该医生当天的号源还没有生成，请稍后再试");
+            }
+            throw new CustomException("-1", "该医生当天的号已经挂满了");
+        }
+        reserve.setQueueNo(reserveSlotMapper.selectIssued(reserve.getDoctorId(), reserve.getTime()));
+        reserveMapper.updateQueueNo(reserve.getId(), reserve.getQueueNo());
+        // 扣除余额，余额不足时不会扣减，整个挂号回滚
+        if (userMapper.deductAccount(reserve.getUserId(), doctor.getPrice()) == 0) {
             throw new CustomException("-1", "您的余额不足，请在个人中心充值");
         }
-        reserve.setStatus(CallEnum.STATUS_NO.status);
-        reserveMapper.insert(reserve);
+        homeService.onReserveAdded(reserve.getTime());
+        callQueueService.onAdded(reserve);
+        return reserve;
+    }
 
-        // 扣除余额
-        user.setAccount(user.getAccount() - doctor.getPrice());
-        userMapper.updateById(user);
+    /**
+     * 根据患者和幂等key查询挂号
+     */
+    public Reserve selectByRequestKey(Integer userId, String requestKey) {
+        return reserveMapper.selectByRequestKey(userId, requestKey);
     }
 
     /**
      * 删除
      */
+    @Transactional
     public void deleteById(Integer id) {
         Reserve reserve = reserveMapper.selectById(id);
-        reserveMapper.deleteById(id);
-        User user = userMapper.selectById(reserve.getUserId());
-        Doctor doctor = doctorMapper.selectById(reserve.getDoctorId());
-        user.setAccount(user.getAccount() + doctor.getPrice());
-        userMapper.updateById(user);
+        // 并发取消同一条挂号时只有一个请求能删掉，其他的不再退费
+        if (reserve == null || reserveMapper.deleteById(id) != 1) {
+            throw new CustomException("-1", "挂号记录不存在");
+        }
+        reserveSlotMapper.increment(reserve.getDoctorId(), reserve.getTime(), 1);
+        Doctor doctor = referenceDataCache.getDoctor(reserve.getDoctorId());
+        userMapper.refundAccount(reserve.getUserId(), doctor.getPrice());
+        slotInventoryService.release(reserve.getDoctorId(), reserve.getTime());
+        homeService.onReserveDeleted(reserve.getTime(), reserve.getStatus());
+        callQueueService.onRemoved(reserve);
     }
 
     /**
      * 批量删除
      */
+    @Transactional
     public void deleteBatch(List<Integer> ids) {
-        for (Integer id : ids) {
-            reserveMapper.deleteById(id);
+        for (List<Integer> batch : ListUtil.partition(ids, Constants.DELETE_BATCH_SIZE)) {
+            // 先按ID顺序锁住还存在的挂号，并发取消过的不会再退费
+            List<Reserve> reserves = reserveMapper.selectByIdsForUpdate(batch);
+            if (CollectionUtil.isEmpty(reserves)) {
+                continue;
+            }
+            List<Integer> lockedIds = reserves.stream().map(Reserve::getId).collect(Collectors.toList());
+            // 按 医生+日期 汇总，一条语句退回这批挂号占用的号；和单个删除一样先锁 reserve_slot 再锁 user
+            Map<String, Availability> slots = new LinkedHashMap<>();
+            for (Reserve reserve : reserves) {
+                Availability slot = slots.computeIfAbsent(reserve.getDoctorId() + "_" + reserve.getTime(), k -> {
+                    Availability a = new Availability();
+                    a.setDoctorId(reserve.getDoctorId());
+                    a.setTime(reserve.getTime());
+                    a.setBooked(0);
+                    return a;
+                });
+                slot.setBooked(slot.getBooked() + 1);
+            }
+            reserveSlotMapper.incrementBatch(new ArrayList<>(slots.values()));
+            // 按患者汇总，一条语句退回这批挂号的挂号费
+            List<Integer> userIds = reserves.stream().map(Reserve::getUserId).distinct().collect(Collectors.toList());
+            userMapper.refundByReserveIds(userIds, lockedIds);
+            reserveMapper.deleteByIds(lockedIds);
+            for (Reserve reserve : reserves) {
+                slotInventoryService.release(reserve.getDoctorId(), reserve.getTime());
+                homeService.onReserveDeleted(reserve.getTime(), reserve.getStatus());
+                callQueueService.onRemoved(reserve);
+            }
         }
     }
 
@@ -84,7 +159,12 @@ public class ReserveService {
      * 修改
      */
     public void updateById(Reserve reserve) {
+        Reserve dbReserve = reserve.getStatus() == null ? null : reserveMapper.selectById(reserve.getId());
         reserveMapper.updateById(reserve);
+        if (dbReserve != null) {
+            homeService.onReserveStatusChanged(dbReserve.getTime(), dbReserve.getStatus(), reserve.getStatus());
+            callQueueService.onStatusChanged(dbReserve, reserve.getStatus());
+        }
     }
 
     /**
@@ -112,9 +192,23 @@ public class ReserveService {
         if (RoleEnum.DOCTOR.name().equals(currentUser.getRole())) {
             reserve.setDoctorId(currentUser.getId());
         }
-        PageHelper.startPage(pageNum, pageSize);
-        List<Reserve> list = reserveMapper.selectAll(reserve);
-        return PageInfo.of(list);
+        if (reserve.getAfterId() != null) {
+            // 游标翻页：从 afterId 往后取一页，不统计总数，翻得再深也只扫描一页数据
+            PageHelper.startPage(1, pageSize, false);
+            List<Reserve> list = reserveMapper.selectAll(reserve);
+            return PageInfo.of(list);
+        }
+        return countCache.selectPage(reserve, pageNum, pageSize, () -> reserveMapper.selectAll(reserve), "reserve");
+    }
+
+    /**
+     * 可预约日历：指定医生，或者一个科室（都不传时为全部医生）从今天开始每天的总号数和剩余号数
+     */
+    public List<DoctorCalendar> selectCalendar(Integer doctorId, Integer departmentId) {
+        Doctor filter = new Doctor();
+        filter.setId(doctorId);
+        filter.setDepartmentId(departmentId);
+        return slotInventoryService.selectCalendar(referenceDataCache.selectDoctors(filter));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,309 @@
+package com.example.service;
+
+import com.example.common.cache.ReferenceDataCache;
+import com.example.common.cache.SingleFlight;
+import com.example.entity.Availability;
+import com.example.entity.BookingDay;
+import com.example.entity.Doctor;
+import com.example.entity.DoctorCalendar;
+import com.example.entity.Plan;
+import com.example.exception.CustomException;
+import com.example.mapper.ReserveMapper;
+import com.example.mapper.ReserveSlotMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 号源库存业务处理
+ * 每个医生在内存中维护一份从今天开始 horizon-days 天的号源日历：按天下标的总号数数组和剩余号数数组，
+ * 占号/退号都是一次CAS，不需要访问数据库。日历在跨天或排班等基础数据变化后重新从数据库计算。
+ * 数据库里每个医生每天的剩余号数（reserve_slot）提前生成：启动时、定时任务和排班变化时，挂号时只做条件扣减
+ **/
+@Service
+public class SlotInventoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotInventoryService.class);
+
+    @Value("${booking.horizon-days:7}")
+    private int horizonDays;
+
+    @Resource
+    private ReserveMapper reserveMapper;
+    @Resource
+    private ReserveSlotMapper reserveSlotMapper;
+    @Resource
+    private ReferenceDataCache referenceDataCache;
+    @Resource
+    private SingleFlight singleFlight;
+
+    // 医生ID -> 号源日历
+    private final ConcurrentHashMap<Integer, DoctorDays> calendars = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        try {
+            createSlots();
+        } catch (Exception e) {
+            log.error("剩余号数初始化失败，等待定时任务重试", e);
+        }
+    }
+
+    /**
+     * 占用一个号，返回该医生这一天的总号数；不在可预约范围内、没有排班或号已挂满时直接拒绝
+     * 在事务中调用时，事务回滚会自动把号退回去
+     */
+    public int acquire(Integer doctorId, LocalDate time) {
+        DoctorDays days = getDays(doctorId);
+        int index = days.index(time);
+        if (index < 0) {
+            throw new CustomException("-1", "只能预约今天起" + horizonDays + "天内的号");
+        }
+        if (days.capacity[index] == 0) {
+            throw new CustomException("-1", "该医生当天没有排班");
+        }
+        int remaining;
+        do {
+            remaining = days.remaining.get(index);
+            if (remaining <= 0) {
+                throw new CustomException("-1", "该医生当天的号已经挂满了");
+            }
+        } while (!days.remaining.compareAndSet(index, remaining, remaining - 1));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        days.release(index);
+                    }
+                }
+            });
+        }
+        return days.capacity[index];
+    }
+
+    /**
+     * 退回一个号（取消挂号），在事务中调用时等事务提交后再退
+     */
+    public void release(Integer doctorId, LocalDate time) {
+        DoctorDays days = calendars.get(doctorId);
+        int index = days == null ? -1 : days.index(time);
+        if (index < 0) {
+            // 还没加载过或已经过期的日历下次会从数据库重新计算，不用处理
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    days.release(index);
+                }
+            });
+        } else {
+            days.release(index);
+        }
+    }
+
+    /**
+     * 按排班生成可预约范围内还没有的剩余号数，多生成一天，零点以后新开放的那一天不用等定时任务
+     * 挂号事务里不再生成，不会在持有一个连接时再借第二个连接，也不用每次先查一遍这一行在不在
+     */
+    @Scheduled(initialDelayString = "${booking.slot-init-interval-ms:600000}", fixedDelayString = "${booking.slot-init-interval-ms:600000}")
+    public void createSlots() {
+        List<LocalDate> times = slotDays();
+        Set<String> existing = new HashSet<>();
+        for (Availability slot : reserveSlotMapper.selectKeys(times.get(0), times.get(times.size() - 1))) {
+            existing.add(slot.getDoctorId() + "|" + slot.getTime());
+        }
+        for (Plan plan : referenceDataCache.selectPlans(new Plan())) {
+            for (LocalDate time : times) {
+                if (week(time).equals(plan.getWeek()) && !existing.contains(plan.getDoctorId() + "|" + time)) {
+                    reserveSlotMapper.insertIfAbsent(plan.getDoctorId(), time, plan.getNum() == null ? 0 : plan.getNum());
+                }
+            }
+        }
+    }
+
+    /**
+     * 排班号数变化后，调整这个星期几各天在数据库里的剩余号数，还没有生成的直接生成，num 为0表示排班已删除
+     */
+    public void onPlanChanged(Integer doctorId, String week, int num) {
+        List<LocalDate> times = new ArrayList<>();
+        for (LocalDate time : slotDays()) {
+            if (week(time).equals(week)) {
+                times.add(time);
+            }
+        }
+        if (times.isEmpty()) {
+            return;
+        }
+        reserveSlotMapper.updateCapacity(doctorId, times, num);
+        for (LocalDate time : times) {
+            reserveSlotMapper.insertIfAbsent(doctorId, time, num);
+        }
+    }
+
+    /**
+     * 查询剩余号数，不在可预约范围内的日期返回0
+     */
+    public int remaining(Integer doctorId, LocalDate time) {
+        DoctorDays days = getDays(doctorId);
+        int index = days.index(time);
+        return index < 0 ? 0 : Math.max(days.remaining.get(index), 0);
+    }
+
+    /**
+     * 一批医生从今天开始的号源日历，没加载过的医生一次查库统计
+     */
+    public List<DoctorCalendar> selectCalendar(List<Doctor> doctors) {
+        List<Integer> missing = new ArrayList<>();
+        for (Doctor doctor : doctors) {
+            if (!isCurrent(calendars.get(doctor.getId()))) {
+                missing.add(doctor.getId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Integer, DoctorDays> loaded = load(missing);
+            loaded.forEach((doctorId, days) -> calendars.compute(doctorId, (k, old) -> isCurrent(old) ? old : days));
+        }
+        List<DoctorCalendar> list = new ArrayList<>(doctors.size());
+        for (Doctor doctor : doctors) {
+            DoctorDays days = getDays(doctor.getId());
+            List<BookingDay> bookingDays = new ArrayList<>(horizonDays);
+            for (int i = 0; i < days.capacity.length; i++) {
+                LocalDate date = days.start.plusDays(i);
+                BookingDay day = new BookingDay();
+                day.setTime(date);
+                day.setWeek(week(date));
+                day.setNum(days.capacity[i]);
+                day.setRemaining(Math.max(days.remaining.get(i), 0));
+                bookingDays.add(day);
+            }
+            DoctorCalendar calendar = new DoctorCalendar();
+            calendar.setDoctorId(doctor.getId());
+            calendar.setDoctorName(doctor.getName());
+            calendar.setDepartmentName(doctor.getDepartmentName());
+            calendar.setPrice(doctor.getPrice());
+            calendar.setDays(bookingDays);
+            list.add(calendar);
+        }
+        return list;
+    }
+
+    /**
+     * 获取医生的号源日历，过期时重新计算
+     * 查库在 compute 外面执行，不占用 ConcurrentHashMap 的锁；放号时同一个医生同时未命中的请求只查一次库，
+     * 并发计算时保留先放进去的日历，已经在上面占的号不会丢
+     */
+    private DoctorDays getDays(Integer doctorId) {
+        DoctorDays days = calendars.get(doctorId);
+        if (isCurrent(days)) {
+            return days;
+        }
+        String key = "slot.calendar." + doctorId + "." + LocalDate.now() + "." + referenceDataCache.version();
+        DoctorDays loaded = singleFlight.execute(key, () -> load(Collections.singletonList(doctorId)).get(doctorId));
+        return calendars.compute(doctorId, (k, old) -> isCurrent(old) ? old : loaded);
+    }
+
+    /**
+     * 日历从今天开始，并且是按当前的排班计算的
+     */
+    private boolean isCurrent(DoctorDays days) {
+        return days != null && days.start.equals(LocalDate.now()) && days.version == referenceDataCache.version();
+    }
+
+    /**
+     * 排班的总号数减去这几天已挂号数量得到每天的剩余号数
+     */
+    private Map<Integer, DoctorDays> load(List<Integer> doctorIds) {
+        long version = referenceDataCache.version();
+        LocalDate start = LocalDate.now();
+        LocalDate end = start.plusDays(horizonDays - 1);
+        // 医生ID -> 星期几 -> 总号数
+        Map<Integer, Map<String, Integer>> plans = new HashMap<>();
+        for (Plan plan : referenceDataCache.selectPlans(new Plan())) {
+            plans.computeIfAbsent(plan.getDoctorId(), k -> new HashMap<>()).put(plan.getWeek(), plan.getNum() == null ? 0 : plan.getNum());
+        }
+        Map<Integer, DoctorDays> result = new HashMap<>();
+        for (Integer doctorId : doctorIds) {
+            Map<String, Integer> nums = plans.getOrDefault(doctorId, Collections.emptyMap());
+            int[] capacity = new int[horizonDays];
+            for (int i = 0; i < horizonDays; i++) {
+                capacity[i] = nums.getOrDefault(week(start.plusDays(i)), 0);
+            }
+            result.put(doctorId, new DoctorDays(start, version, capacity));
+        }
+        for (Availability booked : reserveMapper.selectBookedByDay(doctorIds, start, end)) {
+            DoctorDays days = result.get(booked.getDoctorId());
+            int index = days == null ? -1 : days.index(booked.getTime());
+            if (index >= 0) {
+                days.remaining.addAndGet(index, -booked.getBooked());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 需要提前生成剩余号数的日期：可预约范围再加一天
+     */
+    private List<LocalDate> slotDays() {
+        List<LocalDate> times = new ArrayList<>(horizonDays + 1);
+        LocalDate start = LocalDate.now();
+        for (int i = 0; i <= horizonDays; i++) {
+            times.add(start.plusDays(i));
+        }
+        return times;
+    }
+
+    private static String week(LocalDate date) {
+        return date.getDayOfWeek().getDisplayName(TextStyle.FULL_STANDALONE, Locale.CHINA);
+    }
+
+    private static class DoctorDays {
+        private final LocalDate start;
+        private final long version;
+        // 下标为距 start 的天数
+        private final int[] capacity;
+        private final AtomicIntegerArray remaining;
+
+        DoctorDays(LocalDate start, long version, int[] capacity) {
+            this.start = start;
+            this.version = version;
+            this.capacity = capacity;
+            this.remaining = new AtomicIntegerArray(capacity);
+        }
+
+        /**
+         * 日期对应的下标，不在日历范围内返回-1
+         */
+        int index(LocalDate time) {
+            long index = time == null ? -1 : ChronoUnit.DAYS.between(start, time);
+            return index < 0 || index >= capacity.length ? -1 : (int) index;
+        }
+
+        void release(int index) {
+            remaining.getAndUpdate(index, r -> Math.min(r + 1, capacity[index]));
+        }
+    }
+}
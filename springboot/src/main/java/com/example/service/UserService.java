@@ -1,7 +1,9 @@
 package com.example.service;
 
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.util.ObjectUtil;
 import com.example.common.Constants;
+import com.example.common.cache.AccountCache;
 import com.example.common.enums.ResultCodeEnum;
 import com.example.common.enums.RoleEnum;
 import com.example.entity.Account;
@@ -13,6 +15,7 @@ import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.List;
@@ -25,6 +28,10 @@ public class UserService {
 
     @Resource
     private UserMapper userMapper;
+    @Resource
+    private AccountCache accountCache;
+    @Resource
+    private HomeService homeService;
 
     /**
      * 新增
@@ -42,21 +49,27 @@ public class UserService {
         }
         user.setRole(RoleEnum.USER.name());
         userMapper.insert(user);
+        homeService.onAccountAdded(RoleEnum.USER);
     }
 
     /**
      * 删除
      */
     public void deleteById(Integer id) {
-        userMapper.deleteById(id);
+        homeService.onAccountDeleted(RoleEnum.USER, userMapper.deleteById(id));
+        accountCache.invalidate(RoleEnum.USER.name(), id);
     }
 
     /**
      * 批量删除
      */
+    @Transactional
     public void deleteBatch(List<Integer> ids) {
+        for (List<Integer> batch : ListUtil.partition(ids, Constants.DELETE_BATCH_SIZE)) {
+            homeService.onAccountDeleted(RoleEnum.USER, userMapper.deleteByIds(batch));
+        }
         for (Integer id : ids) {
-            userMapper.deleteById(id);
+            accountCache.invalidate(RoleEnum.USER.name(), id);
         }
     }
 
@@ -65,6 +78,7 @@ public class UserService {
      */
     public void updateById(User user) {
         userMapper.updateById(user);
+        accountCache.invalidate(RoleEnum.USER.name(), user.getId());
     }
 
     /**
@@ -79,6 +93,13 @@ public class UserService {
         return dbUser;
     }
 
+    /**
+     * 根据ID查询账号，鉴权时使用，不生成token
+     */
+    public User selectAccountById(Integer id) {
+        return userMapper.selectById(id);
+    }
+
     /**
      * 查询所有
      */
@@ -135,6 +156,7 @@ public class UserService {
         }
         dbUser.setPassword(account.getNewPassword());
         userMapper.updateById(dbUser);
+        accountCache.invalidate(RoleEnum.USER.name(), dbUser.getId());
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.example.utils;
+
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageInfo;
+
+import java.util.List;
+
+/**
+ * 内存分页
+ * 对已经查好的完整列表分页，返回结构和 PageHelper 查库分页一致
+ */
+public class PageUtils {
+
+    /**
+     * 和 pagehelper.reasonable 配置一致：页码小于1时查第一页，超出范围时查最后一页
+     */
+    public static <T> PageInfo<T> page(List<T> list, Integer pageNum, Integer pageSize) {
+        Page<T> page = new Page<>(pageNum, pageSize);
+        page.setReasonable(true);
+        page.setTotal(list.size());
+        if (pageSize == 0) {
+            page.addAll(list);
+        } else {
+            int start = (int) Math.min(page.getStartRow(), list.size());
+            int end = (int) Math.min(page.getEndRow(), list.size());
+            page.addAll(list.subList(start, end));
+        }
+        return new PageInfo<>(page);
+    }
+}
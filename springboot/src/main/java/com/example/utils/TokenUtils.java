@@ -62,6 +62,11 @@ public class TokenUtils {
     public static Account getCurrentUser() {
         try {
             HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getRequest();
+            // 经过 JwtInterceptor 认证的请求已经查好了当前用户
+            Object currentUser = request.getAttribute(Constants.CURRENT_USER);
+            if (currentUser instanceof Account) {
+                return (Account) currentUser;
+            }
             String token = request.getHeader(Constants.TOKEN);
             if (ObjectUtil.isNotEmpty(token)) {
                 String userRole = JWT.decode(token).getAudience().get(0);
@@ -74,7 +79,7 @@ public class TokenUtils {
                     return staticDoctorService.selectById(Integer.valueOf(userId));
                 }
                 if (RoleEnum.USER.name().equals(role)) {
-                    return staticUserService.selectById(Integer.valueOf(userId));
+                    return staticUserService.selectAccountById(Integer.valueOf(userId));
                 }
             }
         } catch (Exception e) {
@@ -0,0 +1,58 @@
+-- V1 为导入 数据库/xm_hospital_manager.sql 之后的表结构，已有库启动时由 Flyway 记为基线版本 1
+-- 本脚本同时在 MySQL 和压测用的 H2（MySQL 模式）上执行，只使用两边都支持的语法
+
+-- ----------------------------
+-- 挂号日期、就诊日期由 varchar 改为 DATE
+-- ----------------------------
+UPDATE reserve SET time = NULL WHERE time = '';
+UPDATE record SET time = NULL WHERE time = '';
+ALTER TABLE reserve MODIFY COLUMN time DATE NULL DEFAULT NULL COMMENT '挂号日期';
+ALTER TABLE record MODIFY COLUMN time DATE NULL DEFAULT NULL COMMENT '就诊日期';
+
+-- ----------------------------
+-- 同一患者同一天重复挂同一医生的号：退回多扣的挂号费，只保留最早的一条，否则唯一索引建不上
+-- 删除前先把这些挂号和退回的挂号费原样记到 reserve_duplicate_audit，迁移后可以核对，必要时人工恢复
+-- ----------------------------
+CREATE TABLE reserve_duplicate_audit (
+  id INT NOT NULL,
+  user_id INT NULL,
+  doctor_id INT NULL,
+  time DATE NULL,
+  status VARCHAR(255) NULL,
+  refund DOUBLE NULL,
+  removed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (id)
+);
+INSERT INTO reserve_duplicate_audit (id, user_id, doctor_id, time, status, refund)
+SELECT reserve.id, reserve.user_id, reserve.doctor_id, reserve.time, reserve.status, doctor.price
+FROM reserve
+LEFT JOIN doctor ON doctor.id = reserve.doctor_id
+WHERE reserve.id NOT IN (SELECT id FROM (SELECT MIN(id) AS id FROM reserve GROUP BY user_id, doctor_id, time) t);
+UPDATE user SET account = account + (
+    SELECT COALESCE(SUM(doctor.price), 0) FROM reserve
+    JOIN doctor ON doctor.id = reserve.doctor_id
+    WHERE reserve.user_id = user.id
+    AND reserve.id NOT IN (SELECT id FROM (SELECT MIN(id) AS id FROM reserve GROUP BY user_id, doctor_id, time) t)
+)
+WHERE id IN (
+    SELECT user_id FROM reserve
+    WHERE id NOT IN (SELECT id FROM (SELECT MIN(id) AS id FROM reserve GROUP BY user_id, doctor_id, time) t)
+);
+DELETE FROM reserve
+WHERE id NOT IN (SELECT id FROM (SELECT MIN(id) AS id FROM reserve GROUP BY user_id, doctor_id, time) t);
+
+-- ----------------------------
+-- 索引，和 mapper 中的查询条件对应
+-- ----------------------------
+-- 防重复挂号（ReserveMapper.insertIfAvailable），也用于按患者查询挂号
+CREATE UNIQUE INDEX uk_reserve_user_doctor_time ON reserve (user_id, doctor_id, time);
+-- 医生当天已挂号数、剩余号源、叫号队列
+CREATE INDEX idx_reserve_doctor_time ON reserve (doctor_id, time);
+-- 首页统计：按天的挂号量、已叫号/未叫号人数
+CREATE INDEX idx_reserve_time_status ON reserve (time, status);
+CREATE INDEX idx_record_doctor_time ON record (doctor_id, time);
+CREATE INDEX idx_record_user_time ON record (user_id, time);
+-- 排班：按医生+星期查询剩余号源，按星期查询当天出诊医生
+CREATE INDEX idx_plan_doctor_week ON plan (doctor_id, week);
+CREATE INDEX idx_plan_week ON plan (week);
+CREATE INDEX idx_doctor_department ON doctor (department_id);
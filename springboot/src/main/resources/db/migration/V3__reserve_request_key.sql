@@ -0,0 +1,6 @@
+-- ----------------------------
+-- 挂号幂等key：客户端重试同一次提交时带相同的 Idempotency-Key，
+-- 内存中的记录过期后按 患者+key 查到原来的挂号；唯一索引保证多个实例同时处理同一个 key 时只挂一次号
+-- ----------------------------
+ALTER TABLE reserve ADD COLUMN request_key VARCHAR(64) NULL;
+CREATE UNIQUE INDEX uk_reserve_user_request_key ON reserve (user_id, request_key);
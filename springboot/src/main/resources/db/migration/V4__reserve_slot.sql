@@ -0,0 +1,12 @@
+-- ----------------------------
+-- 每个医生每天的剩余号数：挂号时按 医生+日期 条件扣减一行，不再每次统计已挂号数量；
+-- 同一医生同一天的挂号只在这一行上排队加锁，不会因为统计时的间隙锁互相死锁
+-- 行在第一次挂这天的号时按 排班号数 - 已挂号数 生成
+-- ----------------------------
+CREATE TABLE reserve_slot (
+  doctor_id INT NOT NULL,
+  time DATE NOT NULL,
+  capacity INT NOT NULL,
+  remaining INT NOT NULL,
+  PRIMARY KEY (doctor_id, time)
+);
@@ -0,0 +1,16 @@
+-- ----------------------------
+-- 候诊号：挂号时在 reserve_slot 这一行上按顺序发号并保存到挂号记录，
+-- 重启后从数据库重新构建叫号队列时每个患者的号不变，中间有人退号也不会让后面的号往前挪
+-- ----------------------------
+ALTER TABLE reserve_slot ADD COLUMN issued INT NOT NULL DEFAULT 0;
+ALTER TABLE reserve ADD COLUMN queue_no INT NULL;
+
+-- 已有挂号按ID顺序补上号，已经生成的剩余号数从最大的号接着发
+UPDATE reserve SET queue_no = (
+    SELECT COUNT(*) FROM (SELECT id, doctor_id, time FROM reserve) r
+    WHERE r.doctor_id = reserve.doctor_id AND r.time = reserve.time AND r.id <= reserve.id
+);
+UPDATE reserve_slot SET issued = (
+    SELECT COALESCE(MAX(reserve.queue_no), 0) FROM reserve
+    WHERE reserve.doctor_id = reserve_slot.doctor_id AND reserve.time = reserve_slot.time
+);
@@ -0,0 +1,68 @@
+package com.example.common.cache;
+
+import com.example.entity.Account;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 账号缓存：查库期间账号被修改时不放入旧账号、缓存满后批量淘汰
+ */
+class AccountCacheTest {
+
+    private static final String ROLE = "USER";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AccountCache accountCache;
+
+    @BeforeEach
+    void setUp() {
+        accountCache = new AccountCache();
+        ReflectionTestUtils.setField(accountCache, "maxSize", 100);
+        ReflectionTestUtils.setField(accountCache, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(accountCache, "meterRegistry", meterRegistry);
+        accountCache.init();
+    }
+
+    @Test
+    void loadedAccountIsCached() {
+        accountCache.put(ROLE, 1, account(1, "123456"), accountCache.stamp(ROLE, 1));
+        assertNotNull(accountCache.get(ROLE, 1));
+    }
+
+    @Test
+    void putAfterInvalidateIsRejected() {
+        assertNull(accountCache.get(ROLE, 1));
+        long stamp = accountCache.stamp(ROLE, 1);
+        // 查库期间修改了密码
+        accountCache.invalidate(ROLE, 1);
+        AccountCache.CachedAccount cached = accountCache.put(ROLE, 1, account(1, "old"), stamp);
+        // 这次请求照常用查到的账号验签，但不会放入缓存
+        assertNotNull(cached);
+        assertNull(accountCache.get(ROLE, 1));
+    }
+
+    @Test
+    void fullCacheEvictsBatchDownToLowWater() {
+        ReflectionTestUtils.setField(accountCache, "maxSize", 10);
+        for (int i = 0; i < 11; i++) {
+            accountCache.put(ROLE, i, account(i, "123456"), accountCache.stamp(ROLE, i));
+        }
+        // 第11个放入前淘汰到容量的90%，放入后是10个
+        assertEquals(10, meterRegistry.get("cache.size").tag("cache", "account").gauge().value());
+        assertEquals(1, meterRegistry.get("cache.evictions").tag("cache", "account").tag("cause", "size").functionCounter().count());
+    }
+
+    private static Account account(Integer id, String password) {
+        Account account = new Account();
+        account.setId(id);
+        account.setPassword(password);
+        account.setRole(ROLE);
+        return account;
+    }
+}
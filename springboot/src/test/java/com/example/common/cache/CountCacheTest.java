@@ -0,0 +1,81 @@
+package com.example.common.cache;
+
+import com.example.entity.Reserve;
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.github.pagehelper.PageInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 分页总数缓存：命中时不再统计，表写入后失效，统计期间表被写过的结果不缓存
+ * 不经过 MyBatis，查询里直接读取 PageHelper 设置的分页参数，模拟分页插件的 count
+ */
+class CountCacheTest {
+
+    private CountCache countCache;
+    private final AtomicInteger counts = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        countCache = new CountCache();
+        ReflectionTestUtils.setField(countCache, "maxSize", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        PageHelper.clearPage();
+    }
+
+    @Test
+    void cachedTotalSkipsCount() {
+        assertEquals(42, countCache.selectPage(new Reserve(), 1, 10, () -> query(42), "reserve").getTotal());
+        PageInfo<Object> page = countCache.selectPage(new Reserve(), 2, 10, () -> query(42), "reserve");
+        assertEquals(42, page.getTotal());
+        assertEquals(1, counts.get());
+    }
+
+    @Test
+    void writeInvalidatesCachedTotal() {
+        countCache.selectPage(new Reserve(), 1, 10, () -> query(42), "reserve");
+        countCache.invalidate("reserve");
+        assertEquals(43, countCache.selectPage(new Reserve(), 1, 10, () -> query(43), "reserve").getTotal());
+        assertEquals(2, counts.get());
+    }
+
+    @Test
+    void writeDuringCountIsNotCached() {
+        countCache.selectPage(new Reserve(), 1, 10, () -> {
+            List<Object> list = query(42);
+            countCache.invalidate("reserve");
+            return list;
+        }, "reserve");
+        countCache.selectPage(new Reserve(), 1, 10, () -> query(43), "reserve");
+        assertEquals(2, counts.get());
+    }
+
+    @Test
+    void writeToOtherTableKeepsCachedTotal() {
+        countCache.selectPage(new Reserve(), 1, 10, () -> query(42), "reserve");
+        countCache.invalidate("doctor");
+        countCache.selectPage(new Reserve(), 1, 10, () -> query(42), "reserve");
+        assertEquals(1, counts.get());
+    }
+
+    private List<Object> query(long total) {
+        Page<Object> page = PageHelper.getLocalPage();
+        if (page.isCount()) {
+            counts.incrementAndGet();
+            page.setTotal(total);
+        }
+        PageHelper.clearPage();
+        return page;
+    }
+}
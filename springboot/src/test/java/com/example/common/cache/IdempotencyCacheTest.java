@@ -0,0 +1,134 @@
+package com.example.common.cache;
+
+import com.example.exception.CustomException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 幂等请求表：重复请求等待执行中的请求、失败后可重试、同一个key换了请求内容被拒绝、表满后批量淘汰
+ */
+class IdempotencyCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private IdempotencyCache cache;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        cache = new IdempotencyCache();
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 600L);
+        ReflectionTestUtils.setField(cache, "waitTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        cache.init();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void duplicateWaitsForInFlightExecution() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        Object result = new Object();
+
+        Future<Object> first = executor.submit(() -> cache.execute("k", "f", () -> null, () -> {
+            executions.incrementAndGet();
+            started.countDown();
+            await(finish);
+            return result;
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        ExecutorService second = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> duplicate = second.submit(() -> cache.execute("k", "f", () -> null, () -> {
+                executions.incrementAndGet();
+                return new Object();
+            }));
+            finish.countDown();
+            assertSame(result, first.get(5, TimeUnit.SECONDS));
+            assertSame(result, duplicate.get(5, TimeUnit.SECONDS));
+        } finally {
+            second.shutdownNow();
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void completedResultIsReplayed() {
+        Object result = new Object();
+        assertSame(result, cache.execute("k", "f", () -> null, () -> result));
+        assertSame(result, cache.execute("k", "f", () -> null, () -> {
+            throw new IllegalStateException("不应再次执行");
+        }));
+    }
+
+    @Test
+    void failureAllowsRetry() {
+        assertThrows(CustomException.class, () -> cache.execute("k", "f", () -> null, () -> {
+            throw new CustomException("-1", "失败");
+        }));
+        Object result = new Object();
+        assertSame(result, cache.execute("k", "f", () -> null, () -> result));
+    }
+
+    @Test
+    void lookupHitSkipsAction() {
+        Object existing = new Object();
+        assertSame(existing, cache.execute("k", "f", () -> existing, () -> {
+            throw new IllegalStateException("不应执行");
+        }));
+        assertEquals(1, requests("lookup"));
+        assertEquals(0, requests("executed"));
+    }
+
+    @Test
+    void reusedKeyWithDifferentFingerprintIsRejected() {
+        cache.execute("k", "doctor-1", () -> null, Object::new);
+        CustomException e = assertThrows(CustomException.class,
+                () -> cache.execute("k", "doctor-2", () -> null, Object::new));
+        assertEquals("-1", e.getCode());
+    }
+
+    @Test
+    void fullTableEvictsBatchDownToLowWater() {
+        ReflectionTestUtils.setField(cache, "maxSize", 10);
+        for (int i = 0; i < 11; i++) {
+            cache.execute("k" + i, "f", () -> null, Object::new);
+        }
+        // 超出容量时一次淘汰到容量的90%，不是每次只淘汰一条
+        assertEquals(9, meterRegistry.get("idempotency.size").gauge().value());
+        assertEquals(2, meterRegistry.get("idempotency.evictions").tag("cause", "size").functionCounter().count());
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("idempotency.requests").tag("result", result).functionCounter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.common.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 相同查询合并执行：同时到达的请求只执行一次，失败不缓存
+ */
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(singleFlight, "meterRegistry", meterRegistry);
+        singleFlight.init();
+    }
+
+    @Test
+    void concurrentCallsShareOneExecution() throws Exception {
+        ReflectionTestUtils.setField(singleFlight, "maxSize", 100);
+        int threads = 8;
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        Object result = new Object();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> singleFlight.execute("k", () -> {
+                    executions.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return result;
+                })));
+            }
+            // 等所有请求都进来以后再让查询返回
+            while (meterRegistry.get("single.flight.calls").tag("result", "shared").functionCounter().count() < threads - 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<Object> future : futures) {
+                assertSame(result, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void failureIsNotCached() {
+        ReflectionTestUtils.setField(singleFlight, "ttlMs", 60000L);
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("k", () -> {
+            throw new IllegalStateException("查询失败");
+        }));
+        assertEquals("ok", singleFlight.execute("k", () -> "ok"));
+    }
+
+    @Test
+    void resultIsKeptForTtl() {
+        ReflectionTestUtils.setField(singleFlight, "ttlMs", 60000L);
+        AtomicInteger executions = new AtomicInteger();
+        singleFlight.execute("k", executions::incrementAndGet);
+        singleFlight.execute("k", executions::incrementAndGet);
+        assertEquals(1, executions.get());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.common.config;
+
+import com.example.common.Constants;
+import com.example.common.enums.ResultCodeEnum;
+import com.example.common.enums.RoleEnum;
+import com.example.entity.Account;
+import com.example.exception.CustomException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 挂号准入控制：许可在出错时也会释放、排队满和等待超时时拒绝、非患者不排队
+ */
+class AdmissionInterceptorTest {
+
+    private AdmissionInterceptor interceptor;
+    private HandlerMethod handler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        interceptor = new AdmissionInterceptor();
+        ReflectionTestUtils.setField(interceptor, "enabled", true);
+        ReflectionTestUtils.setField(interceptor, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(interceptor, "queueDepth", 1);
+        ReflectionTestUtils.setField(interceptor, "maxWaitMs", 50L);
+        ReflectionTestUtils.setField(interceptor, "meterRegistry", new SimpleMeterRegistry());
+        interceptor.init();
+        handler = new HandlerMethod(new Object(), Object.class.getMethod("toString"));
+    }
+
+    @Test
+    void permitIsReleasedWhenHandlerFails() {
+        MockHttpServletRequest request = request(RoleEnum.USER);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(request, response, handler));
+        assertEquals(0, permits().availablePermits());
+
+        interceptor.afterCompletion(request, response, handler, new IllegalStateException("接口执行出错"));
+        assertEquals(1, permits().availablePermits());
+
+        // 同一个请求再次完成（例如错误页转发）不会多释放
+        interceptor.afterCompletion(request, response, handler, null);
+        assertEquals(1, permits().availablePermits());
+    }
+
+    @Test
+    void waitTimeoutIsRejectedWithoutLeakingPermits() {
+        MockHttpServletRequest first = request(RoleEnum.USER);
+        interceptor.preHandle(first, new MockHttpServletResponse(), handler);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        CustomException e = assertThrows(CustomException.class,
+                () -> interceptor.preHandle(request(RoleEnum.USER), response, handler));
+        assertEquals(ResultCodeEnum.SYSTEM_BUSY.code, e.getCode());
+        assertNotNull(response.getHeader(Constants.QUEUE_TICKET));
+        assertNotNull(response.getHeader("Retry-After"));
+
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), handler, null);
+        assertEquals(1, permits().availablePermits());
+        assertEquals(0, ((AtomicInteger) ReflectionTestUtils.getField(interceptor, "waiting")).get());
+    }
+
+    @Test
+    void fullQueueIsRejectedImmediately() {
+        ReflectionTestUtils.setField(interceptor, "queueDepth", 0);
+        ReflectionTestUtils.setField(interceptor, "maxWaitMs", 60000L);
+        interceptor.preHandle(request(RoleEnum.USER), new MockHttpServletResponse(), handler);
+
+        long start = System.currentTimeMillis();
+        assertThrows(CustomException.class,
+                () -> interceptor.preHandle(request(RoleEnum.USER), new MockHttpServletResponse(), handler));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    void doctorsAndAdminsBypassQueue() {
+        interceptor.preHandle(request(RoleEnum.USER), new MockHttpServletResponse(), handler);
+        assertTrue(interceptor.preHandle(request(RoleEnum.DOCTOR), new MockHttpServletResponse(), handler));
+        assertTrue(interceptor.preHandle(request(RoleEnum.ADMIN), new MockHttpServletResponse(), handler));
+        assertEquals(0, permits().availablePermits());
+    }
+
+    private Semaphore permits() {
+        return (Semaphore) ReflectionTestUtils.getField(interceptor, "permits");
+    }
+
+    private static MockHttpServletRequest request(RoleEnum role) {
+        Account account = new Account();
+        account.setId(1);
+        account.setRole(role.name());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(Constants.CURRENT_USER, account);
+        return request;
+    }
+}
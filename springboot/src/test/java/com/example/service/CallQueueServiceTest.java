@@ -0,0 +1,165 @@
+package com.example.service;
+
+import com.example.common.Constants;
+import com.example.common.enums.CallEnum;
+import com.example.common.enums.RoleEnum;
+import com.example.entity.Account;
+import com.example.entity.QueueStatus;
+import com.example.entity.Reserve;
+import com.example.exception.CustomException;
+import com.example.mapper.ReserveMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 叫号队列：并发叫号不会重复叫同一个患者，叫号权限按角色校验
+ */
+class CallQueueServiceTest {
+
+    private static final Integer DOCTOR_ID = 1;
+
+    private final List<Reserve> reserves = new ArrayList<>();
+    private ReserveMapper reserveMapper;
+    private CallQueueService service;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= 20; i++) {
+            Reserve reserve = new Reserve();
+            reserve.setId(i);
+            reserve.setUserId(100 + i);
+            reserve.setDoctorId(DOCTOR_ID);
+            reserve.setTime(LocalDate.now());
+            reserve.setStatus(CallEnum.STATUS_NO.status);
+            reserve.setQueueNo(i);
+            reserves.add(reserve);
+        }
+        reserveMapper = mock(ReserveMapper.class);
+        when(reserveMapper.selectAll(any())).thenAnswer(invocation -> new ArrayList<>(reserves));
+        service = new CallQueueService();
+        ReflectionTestUtils.setField(service, "reserveMapper", reserveMapper);
+        ReflectionTestUtils.setField(service, "homeService", mock(HomeService.class));
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void concurrentCallsNeverCallSamePatientTwice() throws Exception {
+        login(RoleEnum.ADMIN, 1);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Integer> called = ConcurrentHashMap.newKeySet();
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int count = 0;
+                    while (true) {
+                        try {
+                            QueueStatus status = service.callNext(DOCTOR_ID);
+                            assertTrue(called.add(status.getCurrentNo()), "重复叫号: " + status.getCurrentNo());
+                            count++;
+                        } catch (CustomException e) {
+                            return count;
+                        }
+                    }
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(20, total);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(Collections.emptyList(), service.getStatus(DOCTOR_ID).getWaitingNos());
+    }
+
+    @Test
+    void doctorCanOnlyCallOwnQueue() {
+        login(RoleEnum.DOCTOR, DOCTOR_ID);
+        QueueStatus status = service.callNext(2);
+        assertEquals(DOCTOR_ID, status.getDoctorId());
+        assertEquals(1, status.getCurrentNo());
+    }
+
+    @Test
+    void patientCannotCall() {
+        login(RoleEnum.USER, 101);
+        CustomException e = assertThrows(CustomException.class, () -> service.callNext(DOCTOR_ID));
+        assertEquals("您的角色不支持叫号操作", e.getMsg());
+    }
+
+    @Test
+    void patientSeesOwnPosition() {
+        login(RoleEnum.USER, 103);
+        QueueStatus status = service.getStatus(DOCTOR_ID);
+        assertEquals(3, status.getMyNo());
+        assertEquals(2, status.getAhead());
+    }
+
+    @Test
+    void queueNumbersComeFromDatabase() {
+        // 3号已经退号，重新构建队列后后面的人号不变
+        reserves.removeIf(reserve -> reserve.getQueueNo() == 3);
+        login(RoleEnum.USER, 104);
+        QueueStatus status = service.getStatus(DOCTOR_ID);
+        assertEquals(4, status.getMyNo());
+        assertEquals(2, status.getAhead());
+    }
+
+    @Test
+    void failedUpdatePutsPatientBack() {
+        when(reserveMapper.updateById(any())).thenThrow(new IllegalStateException("数据库不可用"));
+        login(RoleEnum.ADMIN, 1);
+        assertThrows(IllegalStateException.class, () -> service.callNext(DOCTOR_ID));
+        QueueStatus status = service.getStatus(DOCTOR_ID);
+        assertEquals(20, status.getWaitingNos().size());
+        assertEquals(1, status.getWaitingNos().get(0));
+    }
+
+    /**
+     * 当前用户放在请求属性里，子线程继承同一个请求
+     */
+    private static void login(RoleEnum role, Integer id) {
+        Account account = new Account();
+        account.setId(id);
+        account.setRole(role.name());
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(Constants.CURRENT_USER, account);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request), true);
+    }
+}
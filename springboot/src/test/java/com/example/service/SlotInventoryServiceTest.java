@@ -0,0 +1,165 @@
+package com.example.service;
+
+import com.example.common.cache.ReferenceDataCache;
+import com.example.common.cache.SingleFlight;
+import com.example.entity.Availability;
+import com.example.entity.Plan;
+import com.example.exception.CustomException;
+import com.example.mapper.ReserveMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 号源库存：号数上限、预约范围、退号
+ */
+class SlotInventoryServiceTest {
+
+    private static final Integer DOCTOR_ID = 1;
+    private static final int HORIZON_DAYS = 7;
+
+    private final LocalDate today = LocalDate.now();
+    private ReserveMapper reserveMapper;
+    private SlotInventoryService service;
+
+    @BeforeEach
+    void setUp() {
+        reserveMapper = mock(ReserveMapper.class);
+        when(reserveMapper.selectBookedByDay(anyList(), any(), any())).thenReturn(Collections.emptyList());
+        service = newService(plan(today, 3));
+    }
+
+    @Test
+    void acquireStopsAtCapacity() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(3, service.acquire(DOCTOR_ID, today));
+        }
+        CustomException e = assertThrows(CustomException.class, () -> service.acquire(DOCTOR_ID, today));
+        assertEquals("该医生当天的号已经挂满了", e.getMsg());
+        assertEquals(0, service.remaining(DOCTOR_ID, today));
+    }
+
+    @Test
+    void bookedReservationsReduceRemaining() {
+        Availability booked = new Availability();
+        booked.setDoctorId(DOCTOR_ID);
+        booked.setTime(today);
+        booked.setBooked(2);
+        when(reserveMapper.selectBookedByDay(anyList(), any(), any())).thenReturn(Collections.singletonList(booked));
+
+        assertEquals(1, service.remaining(DOCTOR_ID, today));
+        service.acquire(DOCTOR_ID, today);
+        assertThrows(CustomException.class, () -> service.acquire(DOCTOR_ID, today));
+    }
+
+    @Test
+    void rejectsDatesOutsideHorizon() {
+        CustomException past = assertThrows(CustomException.class, () -> service.acquire(DOCTOR_ID, today.minusDays(1)));
+        assertEquals("只能预约今天起" + HORIZON_DAYS + "天内的号", past.getMsg());
+        CustomException future = assertThrows(CustomException.class, () -> service.acquire(DOCTOR_ID, today.plusDays(HORIZON_DAYS)));
+        assertEquals("只能预约今天起" + HORIZON_DAYS + "天内的号", future.getMsg());
+        assertEquals(0, service.remaining(DOCTOR_ID, today.plusDays(HORIZON_DAYS)));
+    }
+
+    @Test
+    void rejectsDayWithoutPlan() {
+        CustomException e = assertThrows(CustomException.class, () -> service.acquire(DOCTOR_ID, today.plusDays(1)));
+        assertEquals("该医生当天没有排班", e.getMsg());
+    }
+
+    @Test
+    void releaseReturnsSlotButNeverExceedsCapacity() {
+        service.acquire(DOCTOR_ID, today);
+        service.release(DOCTOR_ID, today);
+        service.release(DOCTOR_ID, today);
+        assertEquals(3, service.remaining(DOCTOR_ID, today));
+    }
+
+    @Test
+    void concurrentAcquireNeverOverbooks() throws Exception {
+        int capacity = 50;
+        service = newService(plan(today, capacity));
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger acquired = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 20; i++) {
+                        try {
+                            service.acquire(DOCTOR_ID, today);
+                            acquired.incrementAndGet();
+                        } catch (CustomException ignored) {
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(capacity, acquired.get());
+        assertEquals(0, service.remaining(DOCTOR_ID, today));
+    }
+
+    @Test
+    void calendarIsReloadedAfterPlanChange() {
+        ReferenceDataCache referenceDataCache = mock(ReferenceDataCache.class);
+        when(referenceDataCache.version()).thenReturn(1L);
+        when(referenceDataCache.selectPlans(any())).thenReturn(Collections.singletonList(plan(today, 3)));
+        ReflectionTestUtils.setField(service, "referenceDataCache", referenceDataCache);
+        service.acquire(DOCTOR_ID, today);
+        assertEquals(2, service.remaining(DOCTOR_ID, today));
+
+        when(referenceDataCache.version()).thenReturn(2L);
+        when(referenceDataCache.selectPlans(any())).thenReturn(Collections.singletonList(plan(today, 5)));
+        assertEquals(5, service.remaining(DOCTOR_ID, today));
+    }
+
+    private SlotInventoryService newService(Plan plan) {
+        ReferenceDataCache referenceDataCache = mock(ReferenceDataCache.class);
+        when(referenceDataCache.version()).thenReturn(1L);
+        when(referenceDataCache.selectPlans(any())).thenReturn(Collections.singletonList(plan));
+        SlotInventoryService s = new SlotInventoryService();
+        ReflectionTestUtils.setField(s, "horizonDays", HORIZON_DAYS);
+        ReflectionTestUtils.setField(s, "reserveMapper", reserveMapper);
+        ReflectionTestUtils.setField(s, "referenceDataCache", referenceDataCache);
+        ReflectionTestUtils.setField(s, "singleFlight", new SingleFlight());
+        return s;
+    }
+
+    private static Plan plan(LocalDate date, int num) {
+        Plan plan = new Plan();
+        plan.setDoctorId(DOCTOR_ID);
+        plan.setWeek(date.getDayOfWeek().getDisplayName(TextStyle.FULL_STANDALONE, Locale.CHINA));
+        plan.setNum(num);
+        return plan;
+    }
+}